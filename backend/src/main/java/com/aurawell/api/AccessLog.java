@@ -0,0 +1,114 @@
+package com.aurawell.api;
+
+import com.aurawell.services.Metrics;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Request log written off the request path. Request threads only enqueue a
+// small record; a background thread formats whatever has accumulated and
+// prints it with one write, so stdout's lock is taken once per batch instead
+// of twice per request. When the queue is full records are dropped (and
+// counted) rather than making requests wait for the console.
+class AccessLog {
+    private static final String ANSI_RESET = "\u001B[0m";
+    private static final String ANSI_GREEN = "\u001B[32m";
+    private static final String ANSI_YELLOW = "\u001B[33m";
+    private static final String ANSI_BLUE = "\u001B[34m";
+    private static final String ANSI_PURPLE = "\u001B[35m";
+    private static final String ANSI_CYAN = "\u001B[36m";
+    private static final String ANSI_RED = "\u001B[31m";
+
+    private static final DateTimeFormatter formatter =
+        DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final int MAX_BATCH = 512;
+
+    record Entry(long timeMillis, String method, String uri, String query, String userId,
+                 int status, long durationNanos) {}
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Metrics.Counter dropped = Metrics.get().counter("aurawell_access_log_dropped_total",
+        "Access log records dropped because the log queue was full");
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    AccessLog() {
+        thread = new Thread(this::run, "access-log");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    void log(Entry entry) {
+        if (!queue.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder out = new StringBuilder(16384);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // closing; drain what is left below
+            }
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            for (Entry entry : batch) {
+                format(out, entry);
+            }
+            System.out.print(out);
+            System.out.flush();
+            out.setLength(0);
+            batch.clear();
+        }
+    }
+
+    private static void format(StringBuilder out, Entry entry) {
+        // Color code by method
+        String methodColor = switch (entry.method()) {
+            case "GET" -> ANSI_GREEN;
+            case "POST" -> ANSI_YELLOW;
+            case "PUT" -> ANSI_BLUE;
+            case "DELETE" -> ANSI_RED;
+            default -> ANSI_CYAN;
+        };
+        int status = entry.status();
+        String statusColor = status >= 200 && status < 300 ? ANSI_GREEN :
+                            status >= 400 ? ANSI_RED : ANSI_YELLOW;
+        String user = entry.userId() == null ? "anonymous"
+            : "user:" + entry.userId().substring(0, Math.min(8, entry.userId().length())) + "...";
+
+        out.append(ANSI_PURPLE).append('[').append(formatter.format(Instant.ofEpochMilli(entry.timeMillis())))
+            .append(']').append(ANSI_RESET).append(' ')
+            .append(methodColor).append(String.format("%-6s", entry.method())).append(ANSI_RESET).append(' ')
+            .append(ANSI_CYAN).append(entry.uri());
+        if (entry.query() != null) out.append('?').append(entry.query());
+        out.append(ANSI_RESET).append(' ')
+            .append(ANSI_PURPLE).append('(').append(user).append(')').append(ANSI_RESET).append(' ')
+            .append(statusColor).append(status).append(ANSI_RESET).append(' ')
+            .append(ANSI_CYAN).append('(').append(TimeUnit.NANOSECONDS.toMillis(entry.durationNanos())).append("ms)")
+            .append(ANSI_RESET).append('\n');
+    }
+
+    // Stops taking records and waits briefly for the backlog to be printed
+    void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.aurawell.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// Hit/miss counters and occupancy of the in-memory image cache
+public class AdminImageCacheServlet extends HttpServlet {
+    private final Gson gson = new Gson();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        PrintWriter out = response.getWriter();
+
+        ImageCache.Stats stats = ImageCache.get().stats();
+        long lookups = stats.hits() + stats.misses();
+        JsonObject jsonResponse = new JsonObject();
+        jsonResponse.addProperty("entries", stats.entries());
+        jsonResponse.addProperty("bytes", stats.bytes());
+        jsonResponse.addProperty("budgetBytes", stats.budget());
+        jsonResponse.addProperty("hits", stats.hits());
+        jsonResponse.addProperty("misses", stats.misses());
+        jsonResponse.addProperty("evictions", stats.evictions());
+        jsonResponse.addProperty("hitRatio", lookups == 0 ? 0 : (double) stats.hits() / lookups);
+        out.write(gson.toJson(jsonResponse));
+        out.flush();
+    }
+}
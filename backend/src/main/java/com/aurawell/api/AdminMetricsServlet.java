@@ -0,0 +1,51 @@
+package com.aurawell.api;
+
+import com.aurawell.services.Metrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+// All metrics in the Prometheus text format. Readable by a logged-in admin,
+// or by a scraper presenting METRICS_TOKEN (if set) as a bearer token; the
+// latter is why web.xml leaves this path public and the check is made here.
+public class AdminMetricsServlet extends HttpServlet {
+    private static final String METRICS_TOKEN = System.getenv("METRICS_TOKEN");
+
+    private final Gson gson = new Gson();
+
+    private boolean hasScrapeToken(HttpServletRequest request) {
+        if (METRICS_TOKEN == null || METRICS_TOKEN.isEmpty()) return false;
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) return false;
+        return MessageDigest.isEqual(METRICS_TOKEN.getBytes(StandardCharsets.UTF_8),
+            authorization.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!hasScrapeToken(request) && !AuthFilter.principal(request).isAdmin()) {
+            PrintWriter out = response.getWriter();
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Admin access required");
+            out.write(gson.toJson(error));
+            out.flush();
+            return;
+        }
+
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter out = response.getWriter();
+        Metrics.get().writePrometheus(out);
+        out.flush();
+    }
+}
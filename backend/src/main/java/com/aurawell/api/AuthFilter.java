@@ -0,0 +1,209 @@
+package com.aurawell.api;
+
+import com.aurawell.models.User;
+import com.google.gson.JsonObject;
+
+import javax.servlet.*;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+// Works out who is calling and enforces the access rules for the URL, so the
+// servlets do neither. The caller is resolved at most once per request and
+// kept as a Principal request attribute; principal(request) returns it.
+// Routes without a rule (the catalog, images, login) never resolve it, so
+// they pay for no session lookup or token check.
+//
+// AUTH_MODE=session (default): the caller comes from the HttpSession set up
+// at login. AUTH_MODE=token: from a signed token (see AuthTokens), sent as
+// the aurawell_token cookie or an "Authorization: Bearer" header. No session
+// is created, so any node can serve any request. A cookie past half its
+// lifetime is reissued on the response.
+//
+// init-params:
+//   rules  one "<url-pattern> = <access>" per line, access being public,
+//          user (any signed-in caller) or admin. Patterns are exact paths or
+//          end in /*, matched against the servlet path like servlet mappings;
+//          the most specific one wins, and anything unmatched is public.
+//
+// Login, registration and logout go through signIn and signOut so they
+// follow the same mode.
+public class AuthFilter implements Filter {
+    private static final String PRINCIPAL = Principal.class.getName();
+    // Session attributes in session mode
+    private static final String USER_ID = "userId";
+    private static final String USER_ROLE = "userRole";
+
+    private enum Access { PUBLIC, USER, ADMIN }
+
+    private final Map<String, Access> exactRules = new HashMap<>();
+    private final List<Map.Entry<String, Access>> prefixRules = new ArrayList<>(); // longest prefix first
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        AuthTokens.get(); // fails the deployment now if the token settings are invalid
+        String rules = filterConfig.getInitParameter("rules");
+        if (rules == null) return;
+        for (String line : rules.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] parts = line.split("=");
+            if (parts.length != 2) throw new ServletException("Bad AuthFilter rule: " + line);
+            String pattern = parts[0].trim();
+            Access access;
+            try {
+                access = Access.valueOf(parts[1].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ServletException("Unknown access in AuthFilter rule: " + line);
+            }
+            if (pattern.endsWith("/*")) {
+                prefixRules.add(Map.entry(pattern.substring(0, pattern.length() - 2), access));
+            } else {
+                exactRules.put(pattern, access);
+            }
+        }
+        prefixRules.sort(Comparator.comparingInt((Map.Entry<String, Access> rule) -> rule.getKey().length()).reversed());
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        Access access = accessFor(httpRequest);
+        if (access != Access.PUBLIC) {
+            Principal principal = resolve(httpRequest, httpResponse);
+            if (!principal.isAuthenticated()) {
+                reject(httpResponse, HttpServletResponse.SC_UNAUTHORIZED, "Not authenticated");
+                return;
+            }
+            if (access == Access.ADMIN && !principal.isAdmin()) {
+                reject(httpResponse, HttpServletResponse.SC_FORBIDDEN, "Admin access required");
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    // The caller, resolved now if no rule needed it yet
+    static Principal principal(HttpServletRequest request) {
+        return resolve(request, null);
+    }
+
+    // The caller if it has been resolved, without resolving it; for the access log
+    static Principal resolvedPrincipal(HttpServletRequest request) {
+        return (Principal) request.getAttribute(PRINCIPAL);
+    }
+
+    private Access accessFor(HttpServletRequest request) {
+        if (exactRules.isEmpty() && prefixRules.isEmpty()) return Access.PUBLIC;
+        String path = request.getServletPath();
+        if (request.getPathInfo() != null) path += request.getPathInfo();
+        Access exact = exactRules.get(path);
+        if (exact != null) return exact;
+        for (Map.Entry<String, Access> rule : prefixRules) {
+            String prefix = rule.getKey();
+            if (path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                return rule.getValue();
+            }
+        }
+        return Access.PUBLIC;
+    }
+
+    // response is null when called from a servlet; a stale cookie is then
+    // left for the next request that goes through a rule
+    private static Principal resolve(HttpServletRequest request, HttpServletResponse response) {
+        Principal principal = (Principal) request.getAttribute(PRINCIPAL);
+        if (principal != null) return principal;
+
+        principal = Principal.ANONYMOUS;
+        AuthTokens tokens = AuthTokens.get();
+        if (tokens != null) {
+            String bearer = bearerToken(request);
+            AuthTokens.Claims claims = tokens.verify(bearer != null ? bearer : cookieToken(request));
+            if (claims != null) {
+                principal = new Principal(claims.userId(), claims.role());
+                if (response != null && bearer == null && tokens.isStale(claims)) {
+                    setTokenCookie(request, response, tokens.issue(claims.userId(), claims.role()), tokens.getTtlSeconds());
+                }
+            }
+        } else {
+            HttpSession session = request.getSession(false);
+            if (session != null && session.getAttribute(USER_ID) != null) {
+                principal = new Principal((String) session.getAttribute(USER_ID), (String) session.getAttribute(USER_ROLE));
+            }
+        }
+        request.setAttribute(PRINCIPAL, principal);
+        return principal;
+    }
+
+    private static void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        PrintWriter out = response.getWriter();
+        out.write(error.toString());
+        out.flush();
+    }
+
+    // Starts an authenticated session for the user; returns the token in
+    // token mode (also set as a cookie), null in session mode
+    static String signIn(HttpServletRequest request, HttpServletResponse response, User user) {
+        AuthTokens tokens = AuthTokens.get();
+        if (tokens == null) {
+            HttpSession session = request.getSession(true);
+            session.setAttribute(USER_ID, user.getId());
+            session.setAttribute(USER_ROLE, user.getRole());
+            return null;
+        }
+        String token = tokens.issue(user.getId(), user.getRole());
+        setTokenCookie(request, response, token, tokens.getTtlSeconds());
+        return token;
+    }
+
+    // A bearer token stays valid until it expires; the client drops it
+    static void signOut(HttpServletRequest request, HttpServletResponse response) {
+        if (AuthTokens.get() == null) {
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                session.invalidate();
+            }
+        } else {
+            setTokenCookie(request, response, "", 0);
+        }
+        request.removeAttribute(PRINCIPAL);
+    }
+
+    private static String bearerToken(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return authorization.substring(7).trim();
+    }
+
+    private static String cookieToken(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) return null;
+        for (Cookie cookie : cookies) {
+            if (AuthTokens.COOKIE.equals(cookie.getName())) return cookie.getValue();
+        }
+        return null;
+    }
+
+    // Written by hand because javax.servlet.http.Cookie has no SameSite. The
+    // frontend is on another site, so over HTTPS the cookie must be
+    // SameSite=None to be sent with its credentialed requests.
+    private static void setTokenCookie(HttpServletRequest request, HttpServletResponse response,
+                                       String token, long maxAgeSeconds) {
+        response.addHeader("Set-Cookie", AuthTokens.COOKIE + "=" + token + "; Path=/; Max-Age=" + maxAgeSeconds
+            + "; HttpOnly" + (request.isSecure() ? "; Secure; SameSite=None" : "; SameSite=Lax"));
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
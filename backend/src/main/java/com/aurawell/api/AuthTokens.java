@@ -0,0 +1,131 @@
+package com.aurawell.api;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Signed, stateless login tokens for AUTH_MODE=token:
+//
+//   base64url("<userId>|<role>|<expiresAt epoch seconds>") "." base64url(HMAC-SHA256)
+//
+// Any node holding the same AUTH_TOKEN_SECRET (at least 32 bytes) accepts a
+// token issued by any other, so requests need no sticky sessions and nodes
+// keep no session state. Without a secret a random key is used, which only
+// works on a single node and logs everyone out on restart.
+//
+// The key is built once and each thread keeps an initialised Mac, so a
+// verification is one HMAC over a few dozen bytes. Tokens cannot be revoked
+// before they expire (AUTH_TOKEN_TTL_MINUTES, default 480); a role change
+// takes effect on the next login.
+final class AuthTokens {
+    static final String COOKIE = "aurawell_token";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final long ttlSeconds;
+
+    record Claims(String userId, String role, long expiresAt) {}
+
+    // Read once, on first use; AuthFilter asks on every request
+    private static final class Holder {
+        static final AuthTokens INSTANCE = create();
+    }
+
+    // null unless AUTH_MODE is token
+    static AuthTokens get() {
+        return Holder.INSTANCE;
+    }
+
+    private static AuthTokens create() {
+        String mode = System.getenv("AUTH_MODE");
+        if (mode == null || mode.isEmpty() || mode.equalsIgnoreCase("session")) {
+            return null;
+        }
+        if (!mode.equalsIgnoreCase("token")) {
+            throw new IllegalStateException("Unknown AUTH_MODE: " + mode);
+        }
+        String secret = System.getenv("AUTH_TOKEN_SECRET");
+        String ttl = System.getenv("AUTH_TOKEN_TTL_MINUTES");
+        byte[] keyBytes;
+        if (secret == null || secret.isEmpty()) {
+            System.err.println("AUTH_TOKEN_SECRET is not set; tokens will only be valid on this node until it restarts");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+            if (keyBytes.length < 32) {
+                throw new IllegalStateException("AUTH_TOKEN_SECRET must be at least 32 bytes");
+            }
+        }
+        return new AuthTokens(keyBytes, 60 * (ttl != null && !ttl.isEmpty() ? Long.parseLong(ttl) : 480));
+    }
+
+    AuthTokens(byte[] keyBytes, long ttlSeconds) {
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " is unavailable", e);
+            }
+        });
+    }
+
+    long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    String issue(String userId, String role) {
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        byte[] payload = (userId + "|" + role + "|" + expiresAt).getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    // null if the token is malformed, forged or expired
+    Claims verify(String token) {
+        if (token == null) return null;
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) return null;
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(token.substring(0, dot));
+            signature = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(signature, sign(payload))) return null;
+
+        String claims = new String(payload, StandardCharsets.UTF_8);
+        int roleEnd = claims.lastIndexOf('|');
+        int idEnd = claims.lastIndexOf('|', roleEnd - 1);
+        if (idEnd <= 0) return null;
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(claims.substring(roleEnd + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (expiresAt <= System.currentTimeMillis() / 1000) return null;
+        return new Claims(claims.substring(0, idEnd), claims.substring(idEnd + 1, roleEnd), expiresAt);
+    }
+
+    // Past half its lifetime, so a browser that keeps using it gets a fresh one
+    boolean isStale(Claims claims) {
+        return claims.expiresAt() - System.currentTimeMillis() / 1000 < ttlSeconds / 2;
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+}
@@ -1,7 +1,7 @@
 package com.aurawell.api;
 
-import com.aurawell.models.Cart;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -9,30 +9,20 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class CartItemServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doPut(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        HttpSession session = request.getSession(false);
+        String userId = AuthFilter.principal(request).userId();
         PrintWriter out = response.getWriter();
 
-        if (session == null || session.getAttribute("userId") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Not authenticated");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         String pathInfo = request.getPathInfo();
         if (pathInfo == null || pathInfo.equals("/")) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -55,11 +45,7 @@ public class CartItemServlet extends HttpServlet {
 
         JsonObject requestBody = gson.fromJson(sb.toString(), JsonObject.class);
         int quantity = requestBody.get("quantity").getAsInt();
-
-        String userId = (String) session.getAttribute("userId");
-        Cart cart = dataManager.getCartByUserId(userId);
-        cart.updateItem(productId, quantity);
-        dataManager.updateCart(cart);
+        repository.updateCartItem(userId, productId, quantity);
 
         JsonObject jsonResponse = new JsonObject();
         jsonResponse.addProperty("success", true);
@@ -72,18 +58,9 @@ public class CartItemServlet extends HttpServlet {
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        HttpSession session = request.getSession(false);
+        String userId = AuthFilter.principal(request).userId();
         PrintWriter out = response.getWriter();
 
-        if (session == null || session.getAttribute("userId") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Not authenticated");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         String pathInfo = request.getPathInfo();
         if (pathInfo == null || pathInfo.equals("/")) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -95,10 +72,7 @@ public class CartItemServlet extends HttpServlet {
         }
 
         String productId = pathInfo.substring(1);
-        String userId = (String) session.getAttribute("userId");
-        Cart cart = dataManager.getCartByUserId(userId);
-        cart.removeItem(productId);
-        dataManager.updateCart(cart);
+        repository.removeCartItem(userId, productId);
 
         JsonObject jsonResponse = new JsonObject();
         jsonResponse.addProperty("success", true);
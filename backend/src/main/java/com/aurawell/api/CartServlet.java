@@ -3,7 +3,8 @@ package com.aurawell.api;
 import com.aurawell.models.Cart;
 import com.aurawell.models.CartItem;
 import com.aurawell.models.Product;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -12,32 +13,21 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class CartServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        HttpSession session = request.getSession(false);
+        String userId = AuthFilter.principal(request).userId();
         PrintWriter out = response.getWriter();
 
-        if (session == null || session.getAttribute("userId") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Not authenticated");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
-        String userId = (String) session.getAttribute("userId");
-        Cart cart = dataManager.getCartByUserId(userId);
+        Cart cart = repository.getCartByUserId(userId);
 
         // Build response with product details
         JsonObject cartResponse = new JsonObject();
@@ -45,7 +35,7 @@ public class CartServlet extends HttpServlet {
         double totalAmount = 0;
 
         for (CartItem item : cart.getItems()) {
-            Product product = dataManager.getProductById(item.getProductId());
+            Product product = repository.getProductById(item.getProductId());
             if (product != null) {
                 JsonObject itemObj = new JsonObject();
                 itemObj.addProperty("productId", item.getProductId());
@@ -70,18 +60,9 @@ public class CartServlet extends HttpServlet {
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        HttpSession session = request.getSession(false);
+        String userId = AuthFilter.principal(request).userId();
         PrintWriter out = response.getWriter();
 
-        if (session == null || session.getAttribute("userId") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Not authenticated");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
         StringBuilder sb = new StringBuilder();
         try (BufferedReader reader = request.getReader()) {
             String line;
@@ -94,11 +75,8 @@ public class CartServlet extends HttpServlet {
         String productId = requestBody.get("productId").getAsString();
         int quantity = requestBody.has("quantity") ? requestBody.get("quantity").getAsInt() : 1;
 
-        String userId = (String) session.getAttribute("userId");
-        Cart cart = dataManager.getCartByUserId(userId);
-
         // Verify product exists
-        Product product = dataManager.getProductById(productId);
+        Product product = repository.getProductById(productId);
         if (product == null) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             JsonObject error = new JsonObject();
@@ -108,8 +86,7 @@ public class CartServlet extends HttpServlet {
             return;
         }
 
-        cart.addItem(productId, quantity);
-        dataManager.updateCart(cart);
+        repository.addCartItem(userId, productId, quantity);
 
         JsonObject jsonResponse = new JsonObject();
         jsonResponse.addProperty("success", true);
@@ -122,20 +99,10 @@ public class CartServlet extends HttpServlet {
     @Override
     protected void doDelete(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        HttpSession session = request.getSession(false);
+        String userId = AuthFilter.principal(request).userId();
         PrintWriter out = response.getWriter();
 
-        if (session == null || session.getAttribute("userId") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Not authenticated");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
-        String userId = (String) session.getAttribute("userId");
-        dataManager.clearCart(userId);
+        repository.clearCart(userId);
 
         JsonObject jsonResponse = new JsonObject();
         jsonResponse.addProperty("success", true);
@@ -0,0 +1,106 @@
+package com.aurawell.api;
+
+import com.aurawell.models.Product;
+import com.aurawell.services.Repository;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+
+// Serialized catalog responses, one per view (the full list or a category),
+// tagged with the repository's catalog version. A read at an unchanged
+// version is a copy of the cached UTF-8 bytes; the ETag is a hash of those
+// bytes, so it stays valid across restarts as long as the content does.
+// A gzipped copy is made once per version, on the first request that accepts it.
+class CatalogResponseCache {
+    private static final int MAX_VIEWS = 256; // category names come from the query string
+    static final int MIN_COMPRESSED_SIZE = 1024;
+
+    static final class Body {
+        final long version;
+        final byte[] bytes;
+        final String etag;
+        final String gzipEtag; // the gzip variant is a different representation
+        private volatile byte[] gzipBytes;
+
+        Body(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+            this.etag = etagOf(bytes);
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+
+        byte[] gzipBytes() throws IOException {
+            byte[] compressed = gzipBytes;
+            if (compressed == null) {
+                synchronized (this) {
+                    compressed = gzipBytes;
+                    if (compressed == null) {
+                        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4);
+                        try (OutputStream out = CompressionFilter.gzip(buffer, Deflater.BEST_COMPRESSION)) {
+                            out.write(bytes);
+                        }
+                        compressed = buffer.toByteArray();
+                        gzipBytes = compressed;
+                    }
+                }
+            }
+            return compressed;
+        }
+    }
+
+    private final Map<String, Body> views = new ConcurrentHashMap<>();
+    private final Gson gson;
+
+    CatalogResponseCache(Gson gson) {
+        this.gson = gson;
+    }
+
+    Body get(String view, Repository repository, Supplier<List<Product>> products) {
+        // Read the version first: if a change lands while serializing, the
+        // entry is labelled older than its content and simply rebuilt next time
+        long version = repository.getCatalogVersion();
+        Body body = views.get(view);
+        if (body != null && body.version == version) {
+            return body;
+        }
+        body = new Body(version, gson.toJson(products.get()).getBytes(StandardCharsets.UTF_8));
+        if (views.size() >= MAX_VIEWS) {
+            views.clear();
+        }
+        views.put(view, body);
+        return body;
+    }
+
+    // If-None-Match may list several tags, or be *; it uses the weak
+    // comparison, so W/"x" and "x" are the same tag
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(opaque)) return true;
+        }
+        return false;
+    }
+
+    private static String etagOf(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.aurawell.api;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
+
+// Gzips JSON and text responses for clients that accept it. The first
+// minSize bytes are held back: a body that ends before that is sent as is,
+// with a Content-Length; a longer one is streamed through a gzip encoder
+// from then on, so large responses are never buffered whole.
+//
+// A servlet that already encoded its body (setting Content-Encoding, e.g.
+// the pre-compressed catalog) is passed through untouched. Brotli is not
+// offered: the JDK has no encoder for it.
+//
+// Requests that may go async are passed through too: their body can still
+// be written after doFilter returns, when finish() would already have closed
+// the gzip stream. isReady and setWriteListener go to the container's stream.
+public class CompressionFilter implements Filter {
+    private static final int DEFAULT_MIN_SIZE = 1024;
+    private static final int DEFAULT_LEVEL = 5; // favours speed, responses are compressed per request
+
+    private int minSize = DEFAULT_MIN_SIZE;
+    private int level = DEFAULT_LEVEL;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        String minSizeParam = filterConfig.getInitParameter("minSize");
+        if (minSizeParam != null) minSize = Integer.parseInt(minSizeParam);
+        String levelParam = filterConfig.getInitParameter("level");
+        if (levelParam != null) level = Integer.parseInt(levelParam);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        if (!acceptsGzip(httpRequest) || "HEAD".equals(httpRequest.getMethod()) || request.isAsyncSupported()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse wrapper = new CompressingResponse(httpResponse, minSize, level);
+        chain.doFilter(request, wrapper);
+        wrapper.finish();
+    }
+
+    // True if Accept-Encoding lists gzip (or *) without q=0
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String accept = request.getHeader("Accept-Encoding");
+        if (accept == null) return false;
+        for (String part : accept.split(",")) {
+            String[] fields = part.trim().split(";");
+            String coding = fields[0].trim().toLowerCase();
+            if (!coding.equals("gzip") && !coding.equals("*")) continue;
+            boolean refused = false;
+            for (int i = 1; i < fields.length; i++) {
+                String parameter = fields[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(parameter.substring(2)) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) return true;
+        }
+        return false;
+    }
+
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase();
+        return type.startsWith("application/json") || type.startsWith("text/")
+            || type.startsWith("application/javascript") || type.startsWith("image/svg+xml");
+    }
+
+    // Level-adjustable gzip stream
+    static OutputStream gzip(OutputStream out, int level) throws IOException {
+        return new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static class CompressingResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private final int minSize;
+        private final int level;
+        private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+        private OutputStream target;     // set once decided: raw or gzip output
+        private boolean passThrough;     // decided not to compress
+        private long declaredLength = -1;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+        // The container's stream, for the non-blocking calls
+        private ServletOutputStream containerStream;
+
+        CompressingResponse(HttpServletResponse response, int minSize, int level) {
+            super(response);
+            this.response = response;
+            this.minSize = minSize;
+            this.level = level;
+        }
+
+        // Called once the body reaches minSize, or at the end
+        private void decide(boolean complete) throws IOException {
+            String encoding = response.getHeader("Content-Encoding");
+            boolean compress = !complete && encoding == null && isCompressible(response.getContentType())
+                && (declaredLength < 0 || declaredLength >= minSize) && response.getStatus() != HttpServletResponse.SC_NO_CONTENT;
+            if (isCompressible(response.getContentType()) && response.getHeader("Vary") == null) {
+                response.addHeader("Vary", "Accept-Encoding");
+            }
+            if (compress) {
+                String etag = response.getHeader("ETag");
+                if (etag != null && !etag.startsWith("W/")) {
+                    response.setHeader("ETag", "W/" + etag); // a different representation of the same content
+                }
+                response.setHeader("Content-Encoding", "gzip");
+                target = gzip(response.getOutputStream(), level);
+            } else {
+                passThrough = true;
+                if (declaredLength >= 0) {
+                    response.setContentLengthLong(declaredLength);
+                } else if (complete) {
+                    response.setContentLength(held.size());
+                }
+                target = response.getOutputStream();
+            }
+            held.writeTo(target);
+            held.reset();
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target == null) {
+                if (held.size() + length < minSize) {
+                    held.write(bytes, offset, length);
+                    return;
+                }
+                held.write(bytes, offset, length);
+                decide(false);
+                return;
+            }
+            target.write(bytes, offset, length);
+        }
+
+        void finish() throws IOException {
+            if (writer != null) writer.flush();
+            if (target == null) {
+                if (held.size() == 0) {
+                    // No body written: a 304, a HEAD, or a file the container sends itself
+                    if (declaredLength >= 0) response.setContentLengthLong(declaredLength);
+                    return;
+                }
+                decide(true);
+            }
+            if (target instanceof GZIPOutputStream gzip) {
+                gzip.finish();
+            }
+            target.flush();
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            if (passThrough) {
+                response.setContentLengthLong(length);
+            } else {
+                declaredLength = length;
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+                return;
+            }
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) throw new IllegalStateException("getWriter() already called");
+            if (stream == null) {
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        CompressingResponse.this.write(new byte[] {(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) throws IOException {
+                        CompressingResponse.this.write(bytes, offset, length);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        if (target != null) target.flush();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        try {
+                            return containerStream().isReady();
+                        } catch (IOException e) {
+                            return false;
+                        }
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        try {
+                            containerStream().setWriteListener(listener);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                };
+            }
+            return stream;
+        }
+
+        private ServletOutputStream containerStream() throws IOException {
+            if (containerStream == null) containerStream = response.getOutputStream();
+            return containerStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) throw new IllegalStateException("getOutputStream() already called");
+                ServletOutputStream out = getOutputStream();
+                stream = null; // only the writer may be used from now on
+                writer = new PrintWriter(new OutputStreamWriter(out, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) writer.flush();
+            if (target != null) {
+                target.flush();
+                response.flushBuffer();
+            }
+        }
+
+        // Content written before a reset has not reached the client yet
+        @Override
+        public void reset() {
+            super.reset();
+            held.reset();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            held.reset();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.aurawell.api;
+
+import com.aurawell.services.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hot images held in direct (off-heap) buffers, up to a byte budget, least
+// recently used evicted first. Entries are keyed by what was requested (file
+// name, plus width for resized copies), so a hit does not touch the file
+// system at all: uploads never change, and other files are re-checked against
+// their size and mtime at most once per REVALIDATE_MILLIS. Files larger than
+// the per-entry limit are not cached; for those sendfile is the better path.
+//
+//   IMAGE_CACHE_MB           total budget, default 64; 0 turns the cache off
+//   IMAGE_CACHE_MAX_FILE_KB  largest file cached, default 1024
+class ImageCache {
+    private static final long REVALIDATE_MILLIS = 2000;
+
+    static final class Entry {
+        final Path path;
+        final String contentType;
+        final String etag;
+        final long length;
+        final long lastModified;
+        private final ByteBuffer bytes;
+        volatile long checkedAt;
+
+        private Entry(Path path, String contentType, String etag, long length, long lastModified, ByteBuffer bytes) {
+            this.path = path;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        // An independent view of bytes [start, end), safe to consume on any thread
+        ByteBuffer slice(long start, long end) {
+            return bytes.duplicate().limit((int) end).position((int) start);
+        }
+    }
+
+    record Stats(int entries, long bytes, long budget, long hits, long misses, long evictions) {}
+
+    private static ImageCache instance;
+
+    private final long budget;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true); // guarded by this
+    private long usedBytes; // guarded by this
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    static synchronized ImageCache get() {
+        if (instance == null) {
+            String megabytes = System.getenv("IMAGE_CACHE_MB");
+            String maxKilobytes = System.getenv("IMAGE_CACHE_MAX_FILE_KB");
+            instance = new ImageCache(
+                (megabytes != null && !megabytes.isEmpty() ? Long.parseLong(megabytes) : 64) * 1024 * 1024,
+                (maxKilobytes != null && !maxKilobytes.isEmpty() ? Long.parseLong(maxKilobytes) : 1024) * 1024);
+            instance.registerMetrics();
+        }
+        return instance;
+    }
+
+    ImageCache(long budget, long maxEntryBytes) {
+        this.budget = budget;
+        this.maxEntryBytes = Math.min(maxEntryBytes, Integer.MAX_VALUE);
+    }
+
+    private void registerMetrics() {
+        Metrics metrics = Metrics.get();
+        metrics.gauge("aurawell_image_cache_bytes", "Bytes held by the image cache", () -> stats().bytes());
+        metrics.gauge("aurawell_image_cache_entries", "Images held by the image cache", () -> stats().entries());
+        metrics.counter("aurawell_image_cache_hits_total", "Image requests answered from memory", hits::sum);
+        metrics.counter("aurawell_image_cache_misses_total", "Images read from disk into the cache", misses::sum);
+        metrics.counter("aurawell_image_cache_evictions_total", "Images evicted to stay within budget", evictions::sum);
+    }
+
+    // An entry that can be served without looking at the file, or null
+    Entry get(String key, boolean immutable) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) return null;
+        if (!immutable && System.currentTimeMillis() - entry.checkedAt >= REVALIDATE_MILLIS) return null;
+        hits.increment();
+        return entry;
+    }
+
+    // Called after the file was stat'ed: the cached entry if the file is
+    // unchanged, otherwise its fresh contents. Null if it is too large to cache.
+    Entry load(String key, Path path, BasicFileAttributes attributes, String contentType, String etag)
+            throws IOException {
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        synchronized (this) {
+            Entry existing = entries.get(key);
+            if (existing != null && existing.path.equals(path)
+                    && existing.length == length && existing.lastModified == lastModified) {
+                existing.checkedAt = System.currentTimeMillis();
+                hits.increment();
+                return existing;
+            }
+        }
+        if (length > maxEntryBytes || length > budget) return null;
+        misses.increment();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until full or end of file
+            }
+        }
+        if (buffer.hasRemaining()) return null; // truncated since the stat
+        buffer.flip();
+        Entry entry = new Entry(path, contentType, etag, length, lastModified, buffer.asReadOnlyBuffer());
+
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) usedBytes -= previous.length;
+            usedBytes += length;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (usedBytes > budget && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                usedBytes -= evicted.length;
+                evictions.increment();
+            }
+        }
+        return entry;
+    }
+
+    // Drops an image and all its resized copies, e.g. when the file is deleted
+    synchronized void invalidate(String fileName) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (entry.getKey().equals(fileName) || entry.getKey().startsWith(fileName + "@")) {
+                usedBytes -= entry.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    // Key for the original (width 0) or a resized copy
+    static String key(String fileName, int width) {
+        return width > 0 ? fileName + "@" + width : fileName;
+    }
+
+    synchronized Stats stats() {
+        return new Stats(entries.size(), usedBytes, budget, hits.sum(), misses.sum(), evictions.sum());
+    }
+}
@@ -0,0 +1,291 @@
+package com.aurawell.api;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Resized copies of uploaded images, kept on disk under uploads/products/derived
+// as <name>.w<width>.jpg (or .png when the image has transparency). Three
+// widths are made: thumbnail, card and detail; a request for any other width
+// gets the next larger one. Derivatives are re-encoded from pixels only, so
+// EXIF and other metadata are dropped.
+//
+// Work runs on a small bounded pool: uploads queue all widths in the
+// background, and a request for a missing derivative waits briefly for it
+// (sharing the job with concurrent requests). When the job takes longer, the
+// pool is saturated or decoding fails, callers get null and serve the
+// original instead; an unfinished job carries on for later requests.
+class ImageDerivatives {
+    static final int THUMBNAIL_WIDTH = 160;
+    static final int CARD_WIDTH = 480;
+    static final int DETAIL_WIDTH = 1080;
+    private static final int[] WIDTHS = {THUMBNAIL_WIDTH, CARD_WIDTH, DETAIL_WIDTH};
+
+    private static final String UPLOAD_DIR = "uploads/products"; // same as ImageUploadServlet
+    private static final String DERIVED_DIR = "derived";
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long WAIT_MILLIS = 300; // request threads must not pile up behind the pool
+
+    private static ImageDerivatives instance;
+
+    private final Path sourceDirectory;
+    private final Path directory;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    static synchronized ImageDerivatives get() {
+        if (instance == null) {
+            instance = new ImageDerivatives(Paths.get(System.getProperty("user.dir"), UPLOAD_DIR));
+        }
+        return instance;
+    }
+
+    static synchronized void shutdown() {
+        if (instance != null) {
+            instance.pool.shutdownNow();
+            instance = null;
+        }
+    }
+
+    ImageDerivatives(Path sourceDirectory) {
+        this.sourceDirectory = sourceDirectory;
+        this.directory = sourceDirectory.resolve(DERIVED_DIR);
+        // Decoding is CPU and memory heavy; leave most cores to request handling
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "image-derivatives-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    // Formats ImageIO can decode; others (webp) are always served as uploaded
+    static boolean isResizable(String fileName) {
+        String extension = extension(fileName);
+        return extension.equals("jpg") || extension.equals("jpeg")
+            || extension.equals("png") || extension.equals("gif");
+    }
+
+    // Smallest derivative at least as wide as requested, or the largest one
+    static int snapWidth(int requested) {
+        for (int width : WIDTHS) {
+            if (width >= requested) return width;
+        }
+        return WIDTHS[WIDTHS.length - 1];
+    }
+
+    // Queues every width of a new upload; whatever does not fit in the queue
+    // is made on first request instead
+    void generateAsync(String fileName) {
+        if (!isResizable(fileName)) return;
+        for (int width : WIDTHS) {
+            try {
+                submit(fileName, width);
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    // Path of an up-to-date derivative, making it if needed; null if the
+    // original should be served instead
+    Path resolve(String fileName, int width) {
+        if (!isResizable(fileName)) return null;
+        try {
+            FileTime sourceTime = Files.getLastModifiedTime(sourceDirectory.resolve(fileName));
+            for (boolean jpeg : new boolean[] {true, false}) {
+                Path target = pathOf(fileName, width, jpeg);
+                try {
+                    if (sourceTime.compareTo(Files.getLastModifiedTime(target)) <= 0) {
+                        return target;
+                    }
+                } catch (NoSuchFileException e) {
+                    // not made yet in this format
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            return submit(fileName, width).get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | TimeoutException | ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private CompletableFuture<Path> submit(String fileName, int width) {
+        String key = fileName + "@" + width;
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) return existing;
+        try {
+            pool.execute(() -> {
+                try {
+                    created.complete(generate(fileName, width));
+                } catch (Throwable e) {
+                    System.err.println("Could not resize " + fileName + " to " + width + "px: " + e.getMessage());
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            throw e;
+        }
+        return created;
+    }
+
+    // Opaque images become JPEGs whatever their source format (a photo saved
+    // as PNG shrinks several times over); images with transparency stay PNG
+    private Path generate(String fileName, int width) throws IOException {
+        Path source = sourceDirectory.resolve(fileName);
+        BufferedImage image = read(source, width);
+        boolean jpeg = !hasTransparency(image);
+        BufferedImage resized = resize(image, Math.min(width, image.getWidth()), jpeg);
+
+        Path target = pathOf(fileName, width, jpeg);
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".resize", ".tmp");
+        try {
+            write(resized, temp, jpeg);
+            // Not scaled down and no smaller re-encoded: keep the original bytes
+            boolean sameFormat = extension(fileName).equals(extension(target.getFileName().toString()))
+                || (jpeg && extension(fileName).equals("jpeg"));
+            if (sameFormat && image.getWidth() <= width && Files.size(temp) >= Files.size(source)) {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // A stale copy in the other format would shadow this one in resolve()
+            Files.deleteIfExists(pathOf(fileName, width, !jpeg));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    private static boolean hasTransparency(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) return false;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) >>> 24) != 0xff) return true;
+            }
+        }
+        return false;
+    }
+
+    // Decodes with source subsampling so a large photo is never held at full
+    // resolution: pixels are skipped while reading, down to about twice the
+    // target width, and the rest is done by resize()
+    private static BufferedImage read(Path source, int width) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) throw new NoSuchFileException(source.toString());
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("Unsupported image format");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true); // metadata is not read at all
+                int subsampling = Math.max(1, reader.getWidth(0) / (width * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halves with bilinear filtering until within 2x, then scales to the exact
+    // size; a single bilinear step from far away would alias badly
+    private static BufferedImage resize(BufferedImage image, int width, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            if (currentWidth <= width * 2) nextWidth = width;
+            int nextHeight = Math.max(1, (int) Math.round((double) image.getHeight() * nextWidth / image.getWidth()));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                if (opaque) {
+                    graphics.setColor(Color.WHITE); // transparent GIF/PNG areas in a JPEG
+                    graphics.fillRect(0, 0, nextWidth, nextHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != width);
+        return current;
+    }
+
+    private static void write(BufferedImage image, Path file, boolean jpeg) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(jpeg ? "jpeg" : "png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (jpeg) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Removes every resized copy of an image that is being deleted
+    void delete(String fileName) throws IOException {
+        for (int width : WIDTHS) {
+            Files.deleteIfExists(pathOf(fileName, width, true));
+            Files.deleteIfExists(pathOf(fileName, width, false));
+        }
+    }
+
+    // kids.jpg at 480 -> derived/kids.jpg.w480.jpg; the source extension stays
+    // in the name so kids.jpg and kids.png do not share derivatives
+    Path pathOf(String fileName, int width, boolean jpeg) {
+        return directory.resolve(fileName + ".w" + width + (jpeg ? ".jpg" : ".png"));
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase();
+    }
+}
@@ -1,19 +1,63 @@
 package com.aurawell.api;
 
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
 
+// Serves uploaded product images. Bodies go out through the container's
+// sendfile support when it offers it (Tomcat), otherwise through
+// FileChannel.transferTo, so file bytes are not copied through the heap.
+// Supports conditional GET (ETag / Last-Modified) and single byte ranges.
+// ?w=<pixels> serves a resized copy (see ImageDerivatives) when one can be made.
+// Small, frequently requested images are answered from memory (ImageCache).
 public class ImageServlet extends HttpServlet {
     private static final String UPLOAD_DIR = "uploads/products";
 
+    // Uploads are named by content hash (older ones by a random UUID) and
+    // never rewritten, so they can be cached for good; other files (the seed
+    // images) may change
+    private static final Pattern IMMUTABLE_NAME = Pattern.compile(
+        "([0-9a-f]{64}|[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})\\.[a-z]+");
+    private static final String IMMUTABLE_CACHE = "public, max-age=31536000, immutable";
+    private static final String DEFAULT_CACHE = "public, max-age=86400";
+    // The original standing in for a resized copy that is not ready yet;
+    // kept briefly so the copy is picked up once it exists
+    private static final String FALLBACK_CACHE = "public, max-age=60";
+
+    // Tomcat's sendfile request attributes
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final long SENDFILE_THRESHOLD = 48 * 1024; // smaller files are cheaper to write directly
+
+    // A satisfiable byte range, end exclusive
+    private record Range(long start, long end) {
+        long length() {
+            return end - start;
+        }
+    }
+
+    private final ImageCache imageCache = ImageCache.get();
+
     private String getUploadPath() {
         String basePath = System.getProperty("user.dir");
         return basePath + File.separator + UPLOAD_DIR;
@@ -33,10 +77,10 @@ public class ImageServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        
+
         // Get the image filename from the URL path
         String pathInfo = request.getPathInfo();
-        
+
         if (pathInfo == null || pathInfo.equals("/")) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
             response.getWriter().write("Image filename required");
@@ -45,7 +89,7 @@ public class ImageServlet extends HttpServlet {
 
         // Remove leading slash
         String fileName = pathInfo.substring(1);
-        
+
         // Security: prevent directory traversal attacks
         if (fileName.contains("..") || fileName.contains("/") || fileName.contains("\\")) {
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -53,28 +97,210 @@ public class ImageServlet extends HttpServlet {
             return;
         }
 
-        Path imagePath = Paths.get(getUploadPath(), fileName);
-        File imageFile = imagePath.toFile();
+        int width = 0;
+        String widthParameter = request.getParameter("w");
+        if (widthParameter != null && !widthParameter.isEmpty()) {
+            try {
+                width = Integer.parseInt(widthParameter);
+            } catch (NumberFormatException e) {
+                width = -1;
+            }
+            if (width <= 0) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.getWriter().write("Invalid width");
+                return;
+            }
+        }
+
+        boolean immutable = IMMUTABLE_NAME.matcher(fileName).matches();
+        if (width > 0) width = ImageDerivatives.snapWidth(width);
+        String cacheKey = ImageCache.key(fileName, width);
+        ImageCache.Entry cached = imageCache.get(cacheKey, immutable);
+        if (cached != null) {
+            serve(request, response, immutable ? IMMUTABLE_CACHE : DEFAULT_CACHE, cached.contentType, cached.etag,
+                cached.length, cached.lastModified, cached.path, cached);
+            return;
+        }
 
-        if (!imageFile.exists() || !imageFile.isFile()) {
+        Path imagePath = Paths.get(getUploadPath(), fileName);
+        BasicFileAttributes attributes = attributes(imagePath);
+        if (attributes == null || !attributes.isRegularFile()) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             response.getWriter().write("Image not found");
             return;
         }
 
-        // Set content type based on file extension
-        String contentType = getContentType(fileName);
+        String servedName = fileName;
+        boolean fallback = false;
+        if (width > 0) {
+            Path derived = ImageDerivatives.get().resolve(fileName, width);
+            BasicFileAttributes derivedAttributes = derived == null ? null : attributes(derived);
+            if (derivedAttributes != null) {
+                imagePath = derived;
+                attributes = derivedAttributes;
+                servedName = derived.getFileName().toString();
+            } else {
+                // Formats that are never resized are the final answer for any width
+                fallback = ImageDerivatives.isResizable(fileName);
+            }
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        // A content-addressed original is its own ETag, the same on every server
+        String etag = servedName.equals(fileName) && ImageStore.CONTENT_NAME.matcher(fileName).matches()
+            ? "\"" + fileName.substring(0, fileName.indexOf('.')) + "\""
+            : "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+        String contentType = getContentType(servedName);
+
+        // A fallback is the original's bytes: cache them under the original's
+        // key, so the width key only ever holds the resized copy
+        cached = imageCache.load(fallback ? ImageCache.key(fileName, 0) : cacheKey,
+            imagePath, attributes, contentType, etag);
+        String cacheControl = fallback ? FALLBACK_CACHE : immutable ? IMMUTABLE_CACHE : DEFAULT_CACHE;
+        serve(request, response, cacheControl, contentType, etag, length, lastModified, imagePath, cached);
+    }
+
+    // Headers, conditional and range handling, then the body: from the cache
+    // entry when there is one, else from the file
+    private void serve(HttpServletRequest request, HttpServletResponse response, String cacheControl,
+                       String contentType, String etag, long length, long lastModified,
+                       Path imagePath, ImageCache.Entry cached) throws IOException {
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Cache-Control", cacheControl);
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        Range range = new Range(0, length);
+        String rangeHeader = request.getHeader("Range");
+        if (rangeHeader != null && rangeApplies(request.getHeader("If-Range"), etag, lastModified)) {
+            Range requested;
+            try {
+                requested = parseRange(rangeHeader, length);
+            } catch (IllegalArgumentException e) {
+                requested = null; // unsupported or malformed: send the whole file
+            }
+            if (requested != null && requested.length() <= 0) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader("Content-Range", "bytes */" + length);
+                return;
+            }
+            if (requested != null) {
+                range = requested;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range",
+                    "bytes " + range.start() + "-" + (range.end() - 1) + "/" + length);
+            }
+        }
+
         response.setContentType(contentType);
-        response.setContentLength((int) imageFile.length());
-        
-        // Set cache headers for better performance
-        response.setHeader("Cache-Control", "public, max-age=86400"); // 1 day cache
-
-        // Stream the image file to the response
-        try (OutputStream out = response.getOutputStream()) {
-            Files.copy(imagePath, out);
+        response.setContentLengthLong(range.length());
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        if (cached != null) {
+            ByteBuffer bytes = cached.slice(range.start(), range.end());
+            WritableByteChannel target = Channels.newChannel(out);
+            while (bytes.hasRemaining()) {
+                target.write(bytes);
+            }
             out.flush();
+            return;
+        }
+
+        if (range.length() >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The container writes the file after the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, imagePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end());
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(imagePath, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = range.start();
+            while (position < range.end()) {
+                long sent = channel.transferTo(position, range.end() - position, target);
+                if (sent <= 0) break; // file truncated underneath us
+                position += sent;
+            }
         }
+        out.flush();
     }
-}
 
+    // One stat call for existence, type, size and mtime; null if missing
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // If-None-Match wins over If-Modified-Since when both are sent
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return CatalogResponseCache.matches(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = headerDate(request, "If-Modified-Since");
+        // HTTP dates have whole seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // If-Range holds a validator; the range is only honoured if it still matches
+    private static boolean rangeApplies(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) return true;
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals(etag); // strong comparison
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant().toEpochMilli() / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // "bytes=0-499", "bytes=500-" or "bytes=-500". Only single ranges are
+    // served; anything else throws and the whole file is sent instead. An
+    // unsatisfiable range comes back empty.
+    private static Range parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            throw new IllegalArgumentException("Unsupported range: " + header);
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) throw new IllegalArgumentException("Malformed range: " + header);
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        if (first.isEmpty()) {
+            long suffix = Long.parseLong(last);
+            if (suffix <= 0) return new Range(0, 0);
+            return new Range(Math.max(0, length - suffix), length);
+        }
+        long start = Long.parseLong(first);
+        long end = last.isEmpty() ? length : Math.min(length, Long.parseLong(last) + 1);
+        if (end <= start && !last.isEmpty() && Long.parseLong(last) < start) {
+            throw new IllegalArgumentException("Malformed range: " + header);
+        }
+        if (start >= length) return new Range(0, 0);
+        return new Range(start, end);
+    }
+
+    private static long headerDate(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1; // unparseable dates are ignored
+        }
+    }
+}
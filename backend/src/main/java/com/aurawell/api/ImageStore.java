@@ -0,0 +1,385 @@
+package com.aurawell.api;
+
+import com.aurawell.models.Product;
+import com.aurawell.services.Repositories;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+// Uploaded images, stored under the SHA-256 of their content as <hex>.<ext>.
+// The same photo uploaded twice is kept once and gets the same URL, and a
+// name never changes meaning, so browsers and proxies can cache it for good.
+//
+// References are counted from Product.imageUrl across the catalog. A
+// background sweep deletes uploads (and their resized copies) that no
+// product uses any more, e.g. after a product is deleted or given a new
+// image. Files younger than GRACE_MILLIS are kept: an image is uploaded
+// before the product that uses it is saved. Resumable upload sessions left
+// unfinished for a day are removed by the same sweep.
+class ImageStore {
+    static final Pattern CONTENT_NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z]+");
+    // Uploads from before content addressing; seed images have other names and are never swept
+    private static final Pattern UUID_NAME =
+        Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.[a-z]+");
+
+    private static final String UPLOAD_DIR = "uploads/products"; // same as ImageServlet
+    private static final String URL_PREFIX = "/api/images/";
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final long SWEEP_INTERVAL_MINUTES = 60;
+    private static final long SWEEP_DELAY_SECONDS = 30; // after a product change, to batch several
+    private static final long GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    static final long MAX_BYTES = 10 * 1024 * 1024;
+    private static final int HEADER_BYTES = 12; // enough for every format's signature
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final String PARTIAL_DIR = ".partial";
+    private static final Pattern SESSION_ID =
+        Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    private static final int SESSION_ID_LENGTH = 36;
+    private static final long SESSION_EXPIRY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    record Stored(String fileName, boolean deduplicated) {}
+
+    // An upload refused for its content or protocol; status is the HTTP status to answer with
+    static class UploadRejectedException extends IOException {
+        final int status;
+
+        UploadRejectedException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static ImageStore instance;
+
+    private final Path directory;
+    private final Path partialDirectory;
+    private final ScheduledExecutorService sweeper;
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+    private final Map<String, Long> recentUploads = new ConcurrentHashMap<>(); // name -> upload time
+    // Held by commit and by the sweep's final check-and-delete, so a file
+    // handed out as a dedup hit is never deleted underneath it
+    private final Object commitLock = new Object();
+
+    static synchronized ImageStore get() {
+        if (instance == null) {
+            instance = new ImageStore(Paths.get(System.getProperty("user.dir"), UPLOAD_DIR));
+        }
+        return instance;
+    }
+
+    static synchronized void shutdown() {
+        if (instance != null) {
+            instance.sweeper.shutdownNow();
+            instance = null;
+        }
+    }
+
+    ImageStore(Path directory) {
+        this.directory = directory;
+        this.partialDirectory = directory.resolve(PARTIAL_DIR);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, SWEEP_INTERVAL_MINUTES, SWEEP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Hashes the upload while writing it to a temporary file, then moves it
+    // to its content name unless that file is already there. The format comes
+    // from the first bytes, not the client's file name; anything that is not
+    // a JPEG, PNG, GIF or WebP, or is over MAX_BYTES, is refused while reading.
+    Stored store(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(HEADER_BYTES);
+        String extension = detectExtension(header, header.length);
+        if (extension == null) throw unsupportedType();
+
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(TEMP_PREFIX + UUID.randomUUID() + ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                digest.update(header);
+                writeFully(channel, ByteBuffer.wrap(header));
+                write(in, channel, header.length, MAX_BYTES, digest);
+            }
+            return commit(temp, digest, extension);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Resumable uploads: the partial file lives in .partial/<id>-<size>.part,
+    // so an upload can be resumed from its size on disk, even after a restart.
+    // Chunks must arrive in order; the file is checked and hashed once complete.
+    String createSession(long size) throws IOException {
+        if (size <= 0) throw new UploadRejectedException(400, "Upload size required");
+        if (size > MAX_BYTES) throw tooLarge();
+        Files.createDirectories(partialDirectory);
+        String id = UUID.randomUUID().toString();
+        Files.createFile(partialDirectory.resolve(id + "-" + size + ".part"));
+        return id;
+    }
+
+    // Bytes received so far and total size, or null for an unknown session
+    long[] sessionProgress(String id) throws IOException {
+        Path file = sessionFile(id);
+        return file == null ? null : new long[] {Files.size(file), sessionSize(file)};
+    }
+
+    // Writes one chunk at start, which must be the current offset. Returns the
+    // stored image once the last byte is in, otherwise null.
+    Stored appendChunk(String id, long start, InputStream in) throws IOException {
+        Path file = sessionFile(id);
+        if (file == null) throw new UploadRejectedException(404, "Upload session not found");
+        long size = sessionSize(file);
+        long offset;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) throw new UploadRejectedException(409, "A chunk is already being written");
+            offset = channel.size();
+            if (start != offset) {
+                throw new UploadRejectedException(409, "Expected a chunk starting at " + offset);
+            }
+            if (offset == 0) {
+                byte[] header = in.readNBytes(HEADER_BYTES);
+                if (detectExtension(header, header.length) == null) throw unsupportedType();
+                if (header.length > size) throw new UploadRejectedException(400, "Chunk goes past the upload size");
+                offset += writeFully(channel.position(0), ByteBuffer.wrap(header));
+            }
+            offset += write(in, channel, offset, size, null);
+        } catch (OverlappingFileLockException e) {
+            throw new UploadRejectedException(409, "A chunk is already being written");
+        }
+        if (offset < size) return null;
+
+        // Complete: hash the file in one read pass and move it into place
+        MessageDigest digest = sha256();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                if (header.hasRemaining()) {
+                    header.put(buffer.duplicate().limit(Math.min(buffer.limit(), header.remaining())));
+                }
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        try {
+            String extension = detectExtension(header.array(), header.position());
+            if (extension == null) throw unsupportedType();
+            return commit(file, digest, extension);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    void abortSession(String id) throws IOException {
+        Path file = sessionFile(id);
+        if (file != null) Files.deleteIfExists(file);
+    }
+
+    // Moves a fully written file to its content name, or drops it if that
+    // content is already stored. A stored copy may be an orphan the sweep is
+    // about to remove, so a dedup hit touches it to restart its grace period.
+    private Stored commit(Path written, MessageDigest digest, String extension) throws IOException {
+        String fileName = HexFormat.of().formatHex(digest.digest()) + extension;
+        Path target = directory.resolve(fileName);
+        synchronized (commitLock) {
+            long now = System.currentTimeMillis();
+            recentUploads.put(fileName, now);
+            try {
+                Files.setLastModifiedTime(target, FileTime.fromMillis(now));
+                return new Stored(fileName, true);
+            } catch (NoSuchFileException e) {
+                // Not stored yet
+            }
+            // Same bytes under the same name, so a concurrent identical upload winning is harmless.
+            // The file is renamed, not copied: each upload is written to disk once.
+            Files.move(written, target, StandardCopyOption.ATOMIC_MOVE);
+            return new Stored(fileName, false);
+        }
+    }
+
+    // Streams into the channel from position, refusing to go past limit
+    private static long write(InputStream in, FileChannel channel, long position, long limit,
+                              MessageDigest digest) throws IOException {
+        byte[] bytes = new byte[BUFFER_BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long written = 0;
+        int read;
+        while ((read = in.read(bytes)) > 0) {
+            if (position + written + read > limit) {
+                throw limit == MAX_BYTES ? tooLarge() : new UploadRejectedException(400, "Chunk goes past the upload size");
+            }
+            if (digest != null) digest.update(bytes, 0, read);
+            buffer.clear().limit(read);
+            channel.position(position + written);
+            written += writeFully(channel, buffer);
+        }
+        return written;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return length;
+    }
+
+    // Extension for the image format the bytes start with, or null
+    static String detectExtension(byte[] header, int length) {
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) return ".jpg";
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) return ".png";
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) return ".gif";
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return ".webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... magic) {
+        if (length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[i] & 0xFF) != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private Path sessionFile(String id) throws IOException {
+        if (!SESSION_ID.matcher(id).matches() || !Files.isDirectory(partialDirectory)) return null;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(partialDirectory, id + "-*.part")) {
+            for (Path entry : entries) return entry;
+        }
+        return null;
+    }
+
+    private static long sessionSize(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SESSION_ID_LENGTH + 1, name.length() - ".part".length()));
+    }
+
+    private static UploadRejectedException tooLarge() {
+        return new UploadRejectedException(413, "File too large. Maximum size is " + MAX_BYTES / (1024 * 1024) + " MB");
+    }
+
+    private static UploadRejectedException unsupportedType() {
+        return new UploadRejectedException(415, "Invalid file type. Allowed: jpg, jpeg, png, gif, webp");
+    }
+
+    // Number of products using each uploaded file
+    static Map<String, Integer> referenceCounts(Iterable<Product> products) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Product product : products) {
+            String url = product.getImageUrl();
+            if (url == null || !url.startsWith(URL_PREFIX)) continue;
+            String fileName = url.substring(URL_PREFIX.length());
+            int query = fileName.indexOf('?');
+            if (query >= 0) fileName = fileName.substring(0, query);
+            counts.merge(fileName, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    // Runs a sweep shortly, once, however many changes ask for it meanwhile
+    void requestSweep() {
+        if (sweepPending.compareAndSet(false, true)) {
+            sweeper.schedule(this::sweepQuietly, SWEEP_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    // Deletes unreferenced uploads past the grace period; returns how many
+    int sweep() throws IOException {
+        sweepPending.set(false);
+        if (!Files.isDirectory(directory)) return 0;
+        long cutoff = System.currentTimeMillis() - GRACE_MILLIS;
+        recentUploads.values().removeIf(time -> time < cutoff);
+        Map<String, Integer> counts = referenceCounts(Repositories.get().getProducts());
+
+        int deleted = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                boolean upload = CONTENT_NAME.matcher(name).matches() || UUID_NAME.matcher(name).matches();
+                boolean temp = name.startsWith(TEMP_PREFIX); // left behind by a crash mid-upload
+                if ((!upload && !temp) || counts.containsKey(name) || recentUploads.containsKey(name)) continue;
+                try {
+                    if (Files.getLastModifiedTime(entry).toMillis() > cutoff) continue;
+                    // Checked again where commit cannot run: it may have just handed this file out
+                    synchronized (commitLock) {
+                        if (recentUploads.containsKey(name) || Files.getLastModifiedTime(entry).toMillis() > cutoff) continue;
+                        Files.delete(entry);
+                    }
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (upload) {
+                    ImageDerivatives.get().delete(name);
+                    ImageCache.get().invalidate(name);
+                    deleted++;
+                }
+            }
+        }
+        if (Files.isDirectory(partialDirectory)) {
+            long expired = System.currentTimeMillis() - SESSION_EXPIRY_MILLIS;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(partialDirectory, "*.part")) {
+                for (Path entry : entries) {
+                    try {
+                        if (Files.getLastModifiedTime(entry).toMillis() < expired) Files.delete(entry);
+                    } catch (NoSuchFileException e) {
+                        // completed meanwhile
+                    }
+                }
+            }
+        }
+        if (deleted > 0) {
+            System.out.println("Image sweep removed " + deleted + " unreferenced upload(s)");
+        }
+        return deleted;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            System.err.println("Image sweep failed: " + e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
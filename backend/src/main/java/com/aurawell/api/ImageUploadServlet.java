@@ -2,24 +2,28 @@ package com.aurawell.api;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import javax.servlet.http.Part;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
 
+// Image uploads, in three forms:
+//   POST   /api/upload/image                multipart form with an "image" part
+//   POST   /api/upload/image                the raw image as the request body;
+//                                           streamed straight to disk, no spooling
+//   POST   /api/upload/image/sessions       {"size": n} starts a resumable upload
+//   PUT    /api/upload/image/sessions/<id>  one chunk, with Content-Range: bytes a-b/n
+//   GET    /api/upload/image/sessions/<id>  how much has arrived, to resume from
+//   DELETE /api/upload/image/sessions/<id>  abandons it
+// Every form checks the file's leading bytes and size as it is read.
 @MultipartConfig(
     fileSizeThreshold = 1024 * 1024,      // 1 MB
     maxFileSize = 1024 * 1024 * 10,        // 10 MB
@@ -27,15 +31,8 @@ import java.util.UUID;
 )
 public class ImageUploadServlet extends HttpServlet {
     private static final Gson gson = new Gson();
-    private static final String UPLOAD_DIR = "uploads/products";
     private static final String[] ALLOWED_EXTENSIONS = {".jpg", ".jpeg", ".png", ".gif", ".webp"};
-
-    private boolean isAdmin(HttpServletRequest request) {
-        HttpSession session = request.getSession(false);
-        if (session == null) return false;
-        String role = (String) session.getAttribute("userRole");
-        return "admin".equals(role);
-    }
+    private static final String SESSIONS_PATH = "/sessions";
 
     private String getFileExtension(String fileName) {
         if (fileName == null || fileName.isEmpty()) return "";
@@ -50,10 +47,19 @@ public class ImageUploadServlet extends HttpServlet {
         return false;
     }
 
-    private String getUploadPath() {
-        // Get the directory where the application is running
-        String basePath = System.getProperty("user.dir");
-        return basePath + File.separator + UPLOAD_DIR;
+    private void writeError(HttpServletResponse response, PrintWriter out, int status, String message) {
+        response.setStatus(status);
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        out.write(gson.toJson(error));
+        out.flush();
+    }
+
+    // Session id from /sessions/<id>, or null
+    private String sessionId(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null || !pathInfo.startsWith(SESSIONS_PATH + "/")) return null;
+        return pathInfo.substring(SESSIONS_PATH.length() + 1);
     }
 
     @Override
@@ -63,74 +69,187 @@ public class ImageUploadServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
         PrintWriter out = response.getWriter();
 
-        // Check admin access
-        if (!isAdmin(request)) {
-            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Admin access required");
-            out.write(gson.toJson(error));
-            out.flush();
-            return;
-        }
-
+        String pathInfo = request.getPathInfo();
         try {
-            Part filePart = request.getPart("image");
-            
-            if (filePart == null || filePart.getSize() == 0) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                JsonObject error = new JsonObject();
-                error.addProperty("error", "No image file provided");
-                out.write(gson.toJson(error));
-                out.flush();
+            if (SESSIONS_PATH.equals(pathInfo)) {
+                startSession(request, response, out);
                 return;
             }
-
-            String originalFileName = Paths.get(filePart.getSubmittedFileName()).getFileName().toString();
-            String extension = getFileExtension(originalFileName);
-
-            if (!isAllowedExtension(extension)) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                JsonObject error = new JsonObject();
-                error.addProperty("error", "Invalid file type. Allowed: jpg, jpeg, png, gif, webp");
-                out.write(gson.toJson(error));
-                out.flush();
+            if (pathInfo != null && !pathInfo.equals("/")) {
+                writeError(response, out, HttpServletResponse.SC_NOT_FOUND, "Not found");
                 return;
             }
 
-            // Generate unique filename
-            String uniqueFileName = UUID.randomUUID().toString() + extension;
-            
-            // Create upload directory if it doesn't exist
-            String uploadPath = getUploadPath();
-            Path uploadDir = Paths.get(uploadPath);
-            Files.createDirectories(uploadDir);
-
-            // Save the file
-            Path filePath = uploadDir.resolve(uniqueFileName);
-            try (InputStream input = filePart.getInputStream()) {
-                Files.copy(input, filePath, StandardCopyOption.REPLACE_EXISTING);
+            String contentType = request.getContentType();
+            ImageStore.Stored stored;
+            if (contentType != null && contentType.toLowerCase().startsWith("multipart/")) {
+                stored = storePart(request, response, out);
+                if (stored == null) return;
+            } else {
+                if (request.getContentLengthLong() > ImageStore.MAX_BYTES) {
+                    writeError(response, out, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                        "File too large. Maximum size is " + ImageStore.MAX_BYTES / (1024 * 1024) + " MB");
+                    return;
+                }
+                // Straight from the socket to the upload directory
+                try (InputStream input = request.getInputStream()) {
+                    stored = ImageStore.get().store(input);
+                }
             }
+            writeStored(out, stored);
+
+        } catch (ImageStore.UploadRejectedException e) {
+            writeError(response, out, e.status, e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            writeError(response, out, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Failed to upload image: " + e.getMessage());
+        }
+    }
+
+    // Multipart form upload; null once an error has been written
+    private ImageStore.Stored storePart(HttpServletRequest request, HttpServletResponse response, PrintWriter out)
+            throws IOException, ServletException {
+        Part filePart = request.getPart("image");
+
+        if (filePart == null || filePart.getSize() == 0) {
+            writeError(response, out, HttpServletResponse.SC_BAD_REQUEST, "No image file provided");
+            return null;
+        }
+
+        String originalFileName = Paths.get(filePart.getSubmittedFileName()).getFileName().toString();
+        String extension = getFileExtension(originalFileName);
+
+        if (!isAllowedExtension(extension)) {
+            writeError(response, out, HttpServletResponse.SC_BAD_REQUEST,
+                "Invalid file type. Allowed: jpg, jpeg, png, gif, webp");
+            return null;
+        }
 
-            // Return the URL path that frontend will use
-            String imageUrl = "/api/images/" + uniqueFileName;
+        // Stored under its content hash; a repeat upload reuses the existing file
+        try (InputStream input = filePart.getInputStream()) {
+            return ImageStore.get().store(input);
+        }
+    }
 
-            JsonObject jsonResponse = new JsonObject();
-            jsonResponse.addProperty("success", true);
-            jsonResponse.addProperty("message", "Image uploaded successfully");
-            jsonResponse.addProperty("imageUrl", imageUrl);
-            jsonResponse.addProperty("fileName", uniqueFileName);
+    private void startSession(HttpServletRequest request, HttpServletResponse response, PrintWriter out)
+            throws IOException {
+        long size;
+        try {
+            JsonObject body = gson.fromJson(request.getReader(), JsonObject.class);
+            size = body != null && body.has("size") ? body.get("size").getAsLong() : -1;
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            size = -1;
+        }
+        String id = ImageStore.get().createSession(size);
+
+        response.setStatus(HttpServletResponse.SC_CREATED);
+        JsonObject jsonResponse = new JsonObject();
+        jsonResponse.addProperty("uploadId", id);
+        jsonResponse.addProperty("offset", 0);
+        jsonResponse.addProperty("size", size);
+        out.write(gson.toJson(jsonResponse));
+        out.flush();
+    }
 
-            out.write(gson.toJson(jsonResponse));
-            out.flush();
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        String id = sessionId(request);
+        if (id == null) {
+            writeError(response, out, HttpServletResponse.SC_NOT_FOUND, "Upload session not found");
+            return;
+        }
 
+        // Content-Range: bytes <first>-<last>/<size>
+        String range = request.getHeader("Content-Range");
+        long start;
+        try {
+            start = Long.parseLong(range.substring("bytes ".length(), range.indexOf('-')).trim());
+        } catch (RuntimeException e) {
+            writeError(response, out, HttpServletResponse.SC_BAD_REQUEST, "Content-Range required: bytes first-last/size");
+            return;
+        }
+
+        try {
+            ImageStore.Stored stored;
+            try (InputStream input = request.getInputStream()) {
+                stored = ImageStore.get().appendChunk(id, start, input);
+            }
+            if (stored != null) {
+                writeStored(out, stored);
+                return;
+            }
+            writeProgress(out, id);
+        } catch (ImageStore.UploadRejectedException e) {
+            writeError(response, out, e.status, e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            JsonObject error = new JsonObject();
-            error.addProperty("error", "Failed to upload image: " + e.getMessage());
-            out.write(gson.toJson(error));
-            out.flush();
+            writeError(response, out, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Failed to upload image: " + e.getMessage());
         }
     }
-}
 
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        String id = sessionId(request);
+        if (id == null || !writeProgress(out, id)) {
+            writeError(response, out, HttpServletResponse.SC_NOT_FOUND, "Upload session not found");
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        String id = sessionId(request);
+        if (id != null) {
+            ImageStore.get().abortSession(id);
+        }
+        JsonObject jsonResponse = new JsonObject();
+        jsonResponse.addProperty("success", true);
+        out.write(gson.toJson(jsonResponse));
+        out.flush();
+    }
+
+    // False if the session does not exist
+    private boolean writeProgress(PrintWriter out, String id) throws IOException {
+        long[] progress = ImageStore.get().sessionProgress(id);
+        if (progress == null) return false;
+        JsonObject jsonResponse = new JsonObject();
+        jsonResponse.addProperty("uploadId", id);
+        jsonResponse.addProperty("offset", progress[0]);
+        jsonResponse.addProperty("size", progress[1]);
+        out.write(gson.toJson(jsonResponse));
+        out.flush();
+        return true;
+    }
+
+    private void writeStored(PrintWriter out, ImageStore.Stored stored) {
+        // Thumbnail, card and detail sizes are made in the background
+        if (!stored.deduplicated()) {
+            ImageDerivatives.get().generateAsync(stored.fileName());
+        }
+
+        // Return the URL path that frontend will use
+        String imageUrl = "/api/images/" + stored.fileName();
+
+        JsonObject jsonResponse = new JsonObject();
+        jsonResponse.addProperty("success", true);
+        jsonResponse.addProperty("message", "Image uploaded successfully");
+        jsonResponse.addProperty("imageUrl", imageUrl);
+        jsonResponse.addProperty("fileName", stored.fileName());
+        jsonResponse.addProperty("deduplicated", stored.deduplicated());
+        out.write(gson.toJson(jsonResponse));
+        out.flush();
+    }
+}
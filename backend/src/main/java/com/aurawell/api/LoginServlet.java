@@ -1,7 +1,9 @@
 package com.aurawell.api;
 
 import com.aurawell.models.User;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.PasswordService;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -9,14 +11,13 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class LoginServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
@@ -33,18 +34,29 @@ public class LoginServlet extends HttpServlet {
         String email = requestBody.get("email").getAsString();
         String password = requestBody.get("password").getAsString();
 
-        User user = dataManager.authenticateUser(email, password);
-
         JsonObject jsonResponse = new JsonObject();
         PrintWriter out = response.getWriter();
 
+        User user;
+        try {
+            user = repository.authenticateUser(email, password);
+        } catch (PasswordService.BusyException e) {
+            // Hashing queue is full; shed the login rather than queue it unbounded
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            jsonResponse.addProperty("success", false);
+            jsonResponse.addProperty("message", e.getMessage());
+            out.write(gson.toJson(jsonResponse));
+            out.flush();
+            return;
+        }
+
         if (user != null) {
-            HttpSession session = request.getSession(true);
-            session.setAttribute("userId", user.getId());
-            session.setAttribute("userRole", user.getRole());
+            String token = AuthFilter.signIn(request, response, user);
 
             jsonResponse.addProperty("success", true);
             jsonResponse.addProperty("message", "Login successful");
+            if (token != null) jsonResponse.addProperty("token", token);
             
             JsonObject userData = new JsonObject();
             userData.addProperty("id", user.getId());
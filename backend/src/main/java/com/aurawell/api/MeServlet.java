@@ -1,7 +1,8 @@
 package com.aurawell.api;
 
 import com.aurawell.models.User;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -9,32 +10,21 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class MeServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        HttpSession session = request.getSession(false);
+        String userId = AuthFilter.principal(request).userId();
         JsonObject jsonResponse = new JsonObject();
         PrintWriter out = response.getWriter();
 
-        if (session == null || session.getAttribute("userId") == null) {
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            jsonResponse.addProperty("success", false);
-            jsonResponse.addProperty("message", "Not authenticated");
-            out.write(gson.toJson(jsonResponse));
-            out.flush();
-            return;
-        }
-
-        String userId = (String) session.getAttribute("userId");
-        User user = dataManager.getUserById(userId);
+        User user = repository.getUserById(userId);
 
         if (user != null) {
             jsonResponse.addProperty("success", true);
@@ -0,0 +1,24 @@
+package com.aurawell.api;
+
+import com.aurawell.services.PasswordService;
+import com.aurawell.services.Repositories;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+public class PersistenceShutdownListener implements ServletContextListener {
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Calibrates the hashing cost now rather than on the first login
+        PasswordService.get();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // Flush pending writes and release the storage backend before the JVM exits
+        ImageStore.shutdown();
+        Repositories.shutdown();
+        ImageDerivatives.shutdown();
+        PasswordService.shutdown();
+    }
+}
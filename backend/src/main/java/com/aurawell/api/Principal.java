@@ -0,0 +1,15 @@
+package com.aurawell.api;
+
+// The caller of a request, as resolved by AuthFilter; userId and role are
+// null for ANONYMOUS
+record Principal(String userId, String role) {
+    static final Principal ANONYMOUS = new Principal(null, null);
+
+    boolean isAuthenticated() {
+        return userId != null;
+    }
+
+    boolean isAdmin() {
+        return "admin".equals(role);
+    }
+}
@@ -0,0 +1,55 @@
+package com.aurawell.api;
+
+import com.aurawell.models.Product;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+// GET /api/products/search?q=vitamin+kids&limit=20
+// Returns the best matching products, most relevant first.
+public class ProductSearchServlet extends HttpServlet {
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 100;
+
+    private final Gson gson = new Gson();
+    private final Repository repository = Repositories.get();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        PrintWriter out = response.getWriter();
+        String query = request.getParameter("q");
+
+        if (query == null || query.isBlank()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Search query (q) required");
+            out.write(gson.toJson(error));
+            out.flush();
+            return;
+        }
+
+        int limit = DEFAULT_LIMIT;
+        String limitParam = request.getParameter("limit");
+        if (limitParam != null && !limitParam.isEmpty()) {
+            try {
+                limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam)));
+            } catch (NumberFormatException e) {
+                // Keep the default
+            }
+        }
+
+        List<Product> products = repository.searchProducts(query, limit);
+        out.write(gson.toJson(products));
+        out.flush();
+    }
+}
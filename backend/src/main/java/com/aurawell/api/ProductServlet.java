@@ -1,7 +1,8 @@
 package com.aurawell.api;
 
 import com.aurawell.models.Product;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -14,7 +15,7 @@ import java.io.PrintWriter;
 
 public class ProductServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
@@ -32,7 +33,7 @@ public class ProductServlet extends HttpServlet {
         }
 
         String productId = pathInfo.substring(1);
-        Product product = dataManager.getProductById(productId);
+        Product product = repository.getProductById(productId);
 
         if (product != null) {
             out.write(gson.toJson(product));
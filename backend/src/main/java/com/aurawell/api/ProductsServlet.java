@@ -1,8 +1,10 @@
 package com.aurawell.api;
 
-import com.aurawell.models.Product;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.ProductQuery;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -10,27 +12,135 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public class ProductsServlet extends HttpServlet {
+    // Any of these switches the response from the plain product array to a
+    // page with facet counts (ProductPage)
+    private static final String[] FACET_PARAMETERS =
+        {"ageGroup", "minPrice", "maxPrice", "inStock", "sort", "limit", "offset"};
+
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
+    private final CatalogResponseCache catalogCache = new CatalogResponseCache(gson);
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
+        if (!isFacetedRequest(request)) {
+            writeCatalog(request, response);
+            return;
+        }
+
+        PrintWriter out = response.getWriter();
+        ProductQuery query;
+        try {
+            query = parseQuery(request);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonObject error = new JsonObject();
+            error.addProperty("error", "Invalid query: " + e.getMessage());
+            out.write(gson.toJson(error));
+            out.flush();
+            return;
+        }
+        out.write(gson.toJson(repository.findProducts(query)));
+        out.flush();
+    }
+
+    // Full list or ?category=, served from the pre-serialized cache
+    private void writeCatalog(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String category = request.getParameter("category");
-        
-        List<Product> products;
+
+        CatalogResponseCache.Body body;
         if (category != null && !category.isEmpty()) {
-            products = dataManager.getProductsByCategory(category);
+            body = catalogCache.get("category:" + category.toLowerCase(), repository,
+                () -> repository.getProductsByCategory(category));
         } else {
-            products = dataManager.getProducts();
+            body = catalogCache.get("all", repository, repository::getProducts);
         }
 
-        PrintWriter out = response.getWriter();
-        out.write(gson.toJson(products));
-        out.flush();
+        // Sent pre-compressed when the client takes gzip; CompressionFilter
+        // leaves responses that already have a Content-Encoding alone
+        boolean gzip = body.bytes.length >= CatalogResponseCache.MIN_COMPRESSED_SIZE
+            && CompressionFilter.acceptsGzip(request);
+        String etag = gzip ? body.gzipEtag : body.etag;
+
+        // Clients may keep the response but must revalidate it
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        if (CatalogResponseCache.matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] bytes = body.bytes;
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+            bytes = body.gzipBytes();
+        }
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    private static boolean isFacetedRequest(HttpServletRequest request) {
+        for (String name : FACET_PARAMETERS) {
+            if (request.getParameter(name) != null) return true;
+        }
+        return false;
+    }
+
+    // ?category=vitamins,kids&ageGroup=adult&minPrice=5&maxPrice=30&inStock=true
+    //  &sort=-price&limit=24&offset=48
+    private static ProductQuery parseQuery(HttpServletRequest request) {
+        ProductQuery query = new ProductQuery();
+        query.setCategories(values(request, "category"));
+        query.setAgeGroups(values(request, "ageGroup"));
+        query.setMinPrice(parseDouble(request.getParameter("minPrice")));
+        query.setMaxPrice(parseDouble(request.getParameter("maxPrice")));
+
+        String inStock = request.getParameter("inStock");
+        if (inStock != null && !inStock.isEmpty()) {
+            query.setInStock(Boolean.parseBoolean(inStock));
+        }
+
+        String sort = request.getParameter("sort");
+        if (sort != null && !sort.isEmpty()) {
+            query.setDescending(sort.startsWith("-"));
+            query.setSort(switch (sort.startsWith("-") ? sort.substring(1) : sort) {
+                case "price" -> ProductQuery.Sort.PRICE;
+                case "createdAt" -> ProductQuery.Sort.CREATED_AT;
+                case "name" -> ProductQuery.Sort.NAME;
+                default -> throw new IllegalArgumentException("sort must be price, createdAt or name, optionally prefixed with -");
+            });
+        }
+
+        String limit = request.getParameter("limit");
+        if (limit != null && !limit.isEmpty()) {
+            query.setLimit(Math.max(1, Math.min(ProductQuery.MAX_LIMIT, Integer.parseInt(limit))));
+        }
+        String offset = request.getParameter("offset");
+        if (offset != null && !offset.isEmpty()) {
+            query.setOffset(Math.max(0, Integer.parseInt(offset)));
+        }
+        return query;
+    }
+
+    // Repeated and comma-separated values both work
+    private static Set<String> values(HttpServletRequest request, String name) {
+        Set<String> values = new LinkedHashSet<>();
+        String[] parameters = request.getParameterValues(name);
+        if (parameters == null) return values;
+        for (String parameter : parameters) {
+            for (String value : parameter.split(",")) {
+                if (!value.isBlank()) values.add(value.trim());
+            }
+        }
+        return values;
     }
-}
 
+    private static Double parseDouble(String value) {
+        return value == null || value.isEmpty() ? null : Double.parseDouble(value);
+    }
+}
@@ -1,7 +1,9 @@
 package com.aurawell.api;
 
 import com.aurawell.models.User;
-import com.aurawell.services.DataManager;
+import com.aurawell.services.PasswordService;
+import com.aurawell.services.Repositories;
+import com.aurawell.services.Repository;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -9,14 +11,13 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class RegisterServlet extends HttpServlet {
     private final Gson gson = new Gson();
-    private final DataManager dataManager = DataManager.getInstance();
+    private final Repository repository = Repositories.get();
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response)
@@ -39,7 +40,7 @@ public class RegisterServlet extends HttpServlet {
         PrintWriter out = response.getWriter();
 
         // Check if email already exists
-        if (dataManager.getUserByEmail(email) != null) {
+        if (repository.getUserByEmail(email) != null) {
             response.setStatus(HttpServletResponse.SC_CONFLICT);
             jsonResponse.addProperty("success", false);
             jsonResponse.addProperty("message", "Email already registered");
@@ -48,16 +49,28 @@ public class RegisterServlet extends HttpServlet {
             return;
         }
 
-        User newUser = new User(email, password, firstName, lastName);
-        User createdUser = dataManager.createUser(newUser);
+        String passwordHash;
+        try {
+            passwordHash = PasswordService.get().hash(password);
+        } catch (PasswordService.BusyException e) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            jsonResponse.addProperty("success", false);
+            jsonResponse.addProperty("message", e.getMessage());
+            out.write(gson.toJson(jsonResponse));
+            out.flush();
+            return;
+        }
+
+        User newUser = new User(email, passwordHash, firstName, lastName);
+        User createdUser = repository.createUser(newUser);
 
         if (createdUser != null) {
-            HttpSession session = request.getSession(true);
-            session.setAttribute("userId", createdUser.getId());
-            session.setAttribute("userRole", createdUser.getRole());
+            String token = AuthFilter.signIn(request, response, createdUser);
 
             jsonResponse.addProperty("success", true);
             jsonResponse.addProperty("message", "Registration successful");
+            if (token != null) jsonResponse.addProperty("token", token);
             
             JsonObject userData = new JsonObject();
             userData.addProperty("id", createdUser.getId());
@@ -0,0 +1,126 @@
+package com.aurawell.api;
+
+import com.aurawell.services.Metrics;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.MappingMatch;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Per-route request metrics: a latency histogram, response counts by status
+// code and the number of requests in flight, all labelled with the servlet's
+// url-pattern (so /api/products/* is one route, whatever the id) and the
+// method. Mapped first so the timings include the other filters.
+//
+// init-params:
+//   accessLog  true to print one line per request (see AccessLog); default false
+public class RequestMetricsFilter implements Filter {
+    private static final String UNMATCHED_ROUTE = "unmatched";
+
+    // Instruments for one route and method, looked up once
+    private static final class RouteMetrics {
+        final String route;
+        final String method;
+        final Metrics.Histogram latency;
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicReferenceArray<Metrics.Counter> byStatus = new AtomicReferenceArray<>(600);
+
+        RouteMetrics(String route, String method) {
+            this.route = route;
+            this.method = method;
+            this.latency = Metrics.get().histogram("aurawell_http_request_duration_seconds",
+                "Time from the first filter until the response was handed back to the container",
+                "route", route, "method", method);
+            Metrics.get().gauge("aurawell_http_requests_in_flight_route",
+                "Requests currently being handled, by route", inFlight::get, "route", route, "method", method);
+        }
+
+        Metrics.Counter status(int code) {
+            if (code < 0 || code >= byStatus.length()) code = 0;
+            Metrics.Counter counter = byStatus.get(code);
+            if (counter == null) {
+                counter = Metrics.get().counter("aurawell_http_responses_total",
+                    "Responses sent, by route and status code",
+                    "route", route, "method", method, "status", Integer.toString(code));
+                byStatus.compareAndSet(code, null, counter);
+            }
+            return counter;
+        }
+    }
+
+    private final Map<String, Map<String, RouteMetrics>> routes = new ConcurrentHashMap<>();
+    private final AtomicLong inFlight = new AtomicLong();
+    private AccessLog accessLog;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        Metrics.get().gauge("aurawell_http_requests_in_flight", "Requests currently being handled", inFlight::get);
+        if ("true".equalsIgnoreCase(filterConfig.getInitParameter("accessLog"))) {
+            accessLog = new AccessLog();
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        long start = System.nanoTime();
+        RouteMetrics metrics = routeMetrics(httpRequest);
+
+        inFlight.incrementAndGet();
+        metrics.inFlight.incrementAndGet();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR; // unless the chain returns normally
+        try {
+            chain.doFilter(request, response);
+            status = httpResponse.getStatus();
+        } finally {
+            long duration = System.nanoTime() - start;
+            metrics.inFlight.decrementAndGet();
+            inFlight.decrementAndGet();
+            metrics.latency.recordNanos(duration);
+            metrics.status(status).increment();
+            if (accessLog != null) {
+                // Only if a rule already resolved the caller; public routes log no user
+                Principal principal = AuthFilter.resolvedPrincipal(httpRequest);
+                accessLog.log(new AccessLog.Entry(System.currentTimeMillis(), httpRequest.getMethod(),
+                    httpRequest.getRequestURI(), httpRequest.getQueryString(),
+                    principal != null ? principal.userId() : null, status, duration));
+            }
+        }
+    }
+
+    private RouteMetrics routeMetrics(HttpServletRequest request) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        // Requests no servlet claims would otherwise add a label per URL
+        String route = mapping == null || mapping.getMappingMatch() == null
+                || mapping.getMappingMatch() == MappingMatch.DEFAULT
+            ? UNMATCHED_ROUTE : mapping.getPattern();
+        String method = switch (request.getMethod()) {
+            case "GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH" -> request.getMethod();
+            default -> "OTHER";
+        };
+        Map<String, RouteMetrics> byMethod = routes.get(route);
+        if (byMethod == null) {
+            byMethod = routes.computeIfAbsent(route, key -> new ConcurrentHashMap<>());
+        }
+        RouteMetrics metrics = byMethod.get(method);
+        if (metrics == null) {
+            metrics = byMethod.computeIfAbsent(method, key -> new RouteMetrics(route, key));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        if (accessLog != null) {
+            accessLog.close();
+        }
+    }
+}
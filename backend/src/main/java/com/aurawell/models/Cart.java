@@ -16,6 +16,13 @@ public class Cart {
         this.userId = userId;
     }
 
+    public Cart(Cart other) {
+        this(other.userId);
+        for (CartItem item : other.items) {
+            items.add(new CartItem(item.getProductId(), item.getQuantity()));
+        }
+    }
+
     // Getters and Setters
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
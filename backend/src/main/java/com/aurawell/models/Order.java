@@ -28,6 +28,16 @@ public class Order {
         this.shippingAddress = shippingAddress;
     }
 
+    public Order(Order other) {
+        this.id = other.id;
+        this.userId = other.userId;
+        this.items = other.items;
+        this.totalAmount = other.totalAmount;
+        this.status = other.status;
+        this.shippingAddress = other.shippingAddress;
+        this.createdAt = other.createdAt;
+    }
+
     // Getters and Setters
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -30,6 +30,18 @@ public class Product {
         this.imageUrl = imageUrl;
     }
 
+    public Product(Product other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.description = other.description;
+        this.price = other.price;
+        this.stock = other.stock;
+        this.category = other.category;
+        this.ageGroup = other.ageGroup;
+        this.imageUrl = other.imageUrl;
+        this.createdAt = other.createdAt;
+    }
+
     // Getters and Setters
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
@@ -0,0 +1,250 @@
+package com.aurawell.services;
+
+import com.aurawell.models.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary snapshot format, an alternative to the pretty-printed JSON
+// files for large stores. Layout (big-endian):
+//
+//   int    magic "AWSB"
+//   short  schema version
+//   byte   kind (users, products, carts, orders)
+//   int    string count, then per string: int byte length + UTF-8 bytes
+//   int    record count, then the records
+//
+// Every string field is stored once in the string table and referenced by
+// index (-1 for null), so repeated user ids, categories, statuses and product
+// names cost four bytes each. Records are decoded field by field straight
+// into the models; no reflection is involved.
+public class BinarySnapshot {
+    private static final int MAGIC = 0x41575342;
+    private static final short VERSION = 1;
+
+    public enum Kind { USERS, PRODUCTS, CARTS, ORDERS }
+
+    private BinarySnapshot() {}
+
+    // Writing
+
+    private static class Encoder {
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        private final DataOutputStream records = new DataOutputStream(recordBytes);
+
+        void string(String value) throws IOException {
+            if (value == null) {
+                records.writeInt(-1);
+                return;
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                stringIds.put(value, id);
+                strings.add(value);
+            }
+            records.writeInt(id);
+        }
+
+        void finish(Kind kind, int count, OutputStream target) throws IOException {
+            DataOutputStream out = new DataOutputStream(target);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(kind.ordinal());
+            out.writeInt(strings.size());
+            for (String value : strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(count);
+            records.flush();
+            recordBytes.writeTo(out);
+            out.flush();
+        }
+    }
+
+    public static void writeUsers(List<User> users, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder();
+        for (User user : users) {
+            encoder.string(user.getId());
+            encoder.string(user.getEmail());
+            encoder.string(user.getPassword());
+            encoder.string(user.getFirstName());
+            encoder.string(user.getLastName());
+            encoder.string(user.getRole());
+            encoder.records.writeLong(user.getCreatedAt());
+        }
+        encoder.finish(Kind.USERS, users.size(), out);
+    }
+
+    public static void writeProducts(List<Product> products, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder();
+        for (Product product : products) {
+            encoder.string(product.getId());
+            encoder.string(product.getName());
+            encoder.string(product.getDescription());
+            encoder.string(product.getCategory());
+            encoder.string(product.getAgeGroup());
+            encoder.string(product.getImageUrl());
+            encoder.records.writeDouble(product.getPrice());
+            encoder.records.writeInt(product.getStock());
+            encoder.records.writeLong(product.getCreatedAt());
+        }
+        encoder.finish(Kind.PRODUCTS, products.size(), out);
+    }
+
+    public static void writeCarts(List<Cart> carts, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder();
+        for (Cart cart : carts) {
+            encoder.string(cart.getUserId());
+            encoder.records.writeInt(cart.getItems().size());
+            for (CartItem item : cart.getItems()) {
+                encoder.string(item.getProductId());
+                encoder.records.writeInt(item.getQuantity());
+            }
+        }
+        encoder.finish(Kind.CARTS, carts.size(), out);
+    }
+
+    public static void writeOrders(List<Order> orders, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder();
+        for (Order order : orders) {
+            encoder.string(order.getId());
+            encoder.string(order.getUserId());
+            encoder.string(order.getStatus());
+            encoder.string(order.getShippingAddress());
+            encoder.records.writeDouble(order.getTotalAmount());
+            encoder.records.writeLong(order.getCreatedAt());
+            encoder.records.writeInt(order.getItems().size());
+            for (OrderItem item : order.getItems()) {
+                encoder.string(item.getProductId());
+                encoder.string(item.getProductName());
+                encoder.records.writeInt(item.getQuantity());
+                encoder.records.writeDouble(item.getPriceAtPurchase());
+            }
+        }
+        encoder.finish(Kind.ORDERS, orders.size(), out);
+    }
+
+    // Reading
+
+    private static class Decoder {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        final int count;
+
+        Decoder(ByteBuffer buffer, Kind expected) throws IOException {
+            this.buffer = buffer;
+            if (buffer.remaining() < 11 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary snapshot version " + version);
+            }
+            int kind = buffer.get();
+            if (kind != expected.ordinal()) {
+                throw new IOException("Expected a " + expected + " snapshot");
+            }
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            count = buffer.getInt();
+        }
+
+        String string() {
+            int id = buffer.getInt();
+            return id < 0 ? null : strings[id];
+        }
+
+        int readInt() { return buffer.getInt(); }
+        long readLong() { return buffer.getLong(); }
+        double readDouble() { return buffer.getDouble(); }
+    }
+
+    public static List<User> readUsers(ByteBuffer buffer) throws IOException {
+        Decoder in = new Decoder(buffer, Kind.USERS);
+        List<User> users = new ArrayList<>(in.count);
+        for (int i = 0; i < in.count; i++) {
+            User user = new User();
+            user.setId(in.string());
+            user.setEmail(in.string());
+            user.setPassword(in.string());
+            user.setFirstName(in.string());
+            user.setLastName(in.string());
+            user.setRole(in.string());
+            user.setCreatedAt(in.readLong());
+            users.add(user);
+        }
+        return users;
+    }
+
+    public static List<Product> readProducts(ByteBuffer buffer) throws IOException {
+        Decoder in = new Decoder(buffer, Kind.PRODUCTS);
+        List<Product> products = new ArrayList<>(in.count);
+        for (int i = 0; i < in.count; i++) {
+            Product product = new Product();
+            product.setId(in.string());
+            product.setName(in.string());
+            product.setDescription(in.string());
+            product.setCategory(in.string());
+            product.setAgeGroup(in.string());
+            product.setImageUrl(in.string());
+            product.setPrice(in.readDouble());
+            product.setStock(in.readInt());
+            product.setCreatedAt(in.readLong());
+            products.add(product);
+        }
+        return products;
+    }
+
+    public static List<Cart> readCarts(ByteBuffer buffer) throws IOException {
+        Decoder in = new Decoder(buffer, Kind.CARTS);
+        List<Cart> carts = new ArrayList<>(in.count);
+        for (int i = 0; i < in.count; i++) {
+            Cart cart = new Cart(in.string());
+            int items = in.readInt();
+            for (int j = 0; j < items; j++) {
+                cart.getItems().add(new CartItem(in.string(), in.readInt()));
+            }
+            carts.add(cart);
+        }
+        return carts;
+    }
+
+    public static List<Order> readOrders(ByteBuffer buffer) throws IOException {
+        Decoder in = new Decoder(buffer, Kind.ORDERS);
+        List<Order> orders = new ArrayList<>(in.count);
+        for (int i = 0; i < in.count; i++) {
+            Order order = new Order();
+            order.setId(in.string());
+            order.setUserId(in.string());
+            order.setStatus(in.string());
+            order.setShippingAddress(in.string());
+            order.setTotalAmount(in.readDouble());
+            order.setCreatedAt(in.readLong());
+            int items = in.readInt();
+            List<OrderItem> orderItems = new ArrayList<>(items);
+            for (int j = 0; j < items; j++) {
+                orderItems.add(new OrderItem(in.string(), in.string(), in.readInt(), in.readDouble()));
+            }
+            order.setItems(orderItems);
+            orders.add(order);
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,9 @@
+package com.aurawell.services;
+
+// Raised when a checkout cannot be committed as a whole, e.g. a line asks for
+// more units than are in stock. Nothing has been written when this is thrown.
+public class CheckoutException extends Exception {
+    public CheckoutException(String message) {
+        super(message);
+    }
+}
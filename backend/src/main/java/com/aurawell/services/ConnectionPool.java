@@ -0,0 +1,103 @@
+package com.aurawell.services;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Small fixed-size JDBC connection pool. Each pooled connection keeps its own
+// prepared statements, so a given SQL string is only parsed once per connection.
+public class ConnectionPool {
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    public static class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        public Connection getConnection() { return connection; }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            statement.clearParameters();
+            return statement;
+        }
+
+        private void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private final String url;
+    private final int maxSize;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger opened = new AtomicInteger();
+
+    public ConnectionPool(String url, int maxSize) {
+        this.url = url;
+        this.maxSize = maxSize;
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        PooledConnection pooled = idle.poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        if (opened.incrementAndGet() <= maxSize) {
+            try {
+                return new PooledConnection(DriverManager.getConnection(url));
+            } catch (SQLException e) {
+                opened.decrementAndGet();
+                throw e;
+            }
+        }
+        opened.decrementAndGet();
+        try {
+            pooled = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pooled == null) {
+            throw new SQLException("Timed out waiting for a database connection");
+        }
+        return pooled;
+    }
+
+    public void release(PooledConnection pooled) {
+        try {
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            idle.offer(pooled);
+        } catch (SQLException e) {
+            // Connection is no longer usable, let a new one take its slot
+            pooled.close();
+            opened.decrementAndGet();
+        }
+    }
+
+    public void close() {
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.close();
+        }
+    }
+}
@@ -3,15 +3,32 @@ package com.aurawell.services;
 import com.aurawell.models.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.BufferUnderflowException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-
-public class DataManager {
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class DataManager implements Repository {
     private static DataManager instance;
     
     // Directory for persistent data storage (writable in production)
@@ -19,11 +36,24 @@ public class DataManager {
     private static final String USERS_FILE;
     private static final String PRODUCTS_FILE;
     private static final String CARTS_FILE;
-    private static final String ORDERS_FILE;
+    private static final String ORDERS_FILE; // single-file layout, migrated into ORDERS_DIR
+    private static final String ORDERS_DIR;
+    private static final String WAL_FILE;
+    private static final boolean BINARY_SNAPSHOTS;
+    private static final int COMPACTION_THRESHOLD;
+    private static final LogFlusher.Mode PERSISTENCE_MODE;
+    private static final long GROUP_COMMIT_INTERVAL_MS;
+    private static final int GROUP_COMMIT_BATCH_SIZE;
+    private static final int ORDER_HOT_MONTHS;
+    private static final int ORDER_SEGMENT_CACHE_SIZE;
     
     static {
-        // Use environment variable or fallback to local path
+        // Use environment variable or fallback to local path. Tools and
+        // benchmarks running in-process may set a DATA_DIR system property instead.
         String baseDir = System.getenv("DATA_DIR");
+        if (baseDir == null || baseDir.isEmpty()) {
+            baseDir = System.getProperty("DATA_DIR");
+        }
         if (baseDir == null || baseDir.isEmpty()) {
             baseDir = System.getProperty("user.dir") + "/data";
         }
@@ -32,18 +62,100 @@ public class DataManager {
         PRODUCTS_FILE = DATA_DIR + "products.json";
         CARTS_FILE = DATA_DIR + "carts.json";
         ORDERS_FILE = DATA_DIR + "orders.json";
+        ORDERS_DIR = DATA_DIR + "orders";
+        WAL_FILE = DATA_DIR + "wal.log";
+
+        // json (default) or binary, see BinarySnapshot. Writing one format
+        // deletes the other, and loading picks the higher generation if both
+        // are left by a crash (see SnapshotFiles), so switching either way is safe.
+        String format = System.getenv("SNAPSHOT_FORMAT");
+        BINARY_SNAPSHOTS = "binary".equalsIgnoreCase(format);
+
+        // Number of logged mutations after which the log is folded into the snapshots
+        String threshold = System.getenv("WAL_COMPACTION_THRESHOLD");
+        COMPACTION_THRESHOLD = threshold != null && !threshold.isEmpty() ? Integer.parseInt(threshold) : 1000;
+
+        // sync: every write fsyncs on the request thread
+        // group (default): writes share one fsync per batch, requests wait for it
+        // async: writes share one fsync per batch, requests do not wait
+        PERSISTENCE_MODE = LogFlusher.Mode.parse(System.getenv("PERSISTENCE_MODE"));
+        String interval = System.getenv("GROUP_COMMIT_INTERVAL_MS");
+        GROUP_COMMIT_INTERVAL_MS = interval != null && !interval.isEmpty() ? Long.parseLong(interval) : 2;
+        String batchSize = System.getenv("GROUP_COMMIT_BATCH_SIZE");
+        GROUP_COMMIT_BATCH_SIZE = batchSize != null && !batchSize.isEmpty() ? Integer.parseInt(batchSize) : 256;
+
+        // Orders are stored per month, see OrderStore. The last ORDER_HOT_MONTHS
+        // months stay in memory, up to ORDER_SEGMENT_CACHE_SIZE older ones are cached.
+        String hotMonths = System.getenv("ORDER_HOT_MONTHS");
+        ORDER_HOT_MONTHS = hotMonths != null && !hotMonths.isEmpty() ? Integer.parseInt(hotMonths) : 3;
+        String segmentCache = System.getenv("ORDER_SEGMENT_CACHE_SIZE");
+        ORDER_SEGMENT_CACHE_SIZE = segmentCache != null && !segmentCache.isEmpty() ? Integer.parseInt(segmentCache) : 6;
     }
 
+    private static final int LOCK_STRIPES = 64;
+
+    // Persistence timings, exported by /api/admin/metrics. The log's fsync is
+    // timed in WriteAheadLog under the same name.
+    static final String PERSISTENCE_METRIC = "aurawell_persistence_duration_seconds";
+    static final String PERSISTENCE_HELP = "Time spent persisting changes, by operation";
+    private static final Metrics.Histogram COMMIT_TIME =
+        Metrics.get().histogram(PERSISTENCE_METRIC, PERSISTENCE_HELP, "operation", "commit");
+    private static final Metrics.Histogram COMPACTION_TIME =
+        Metrics.get().histogram(PERSISTENCE_METRIC, PERSISTENCE_HELP, "operation", "compaction");
+    private static final Metrics.Histogram SNAPSHOT_TIME =
+        Metrics.get().histogram(PERSISTENCE_METRIC, PERSISTENCE_HELP, "operation", "snapshot_write");
+
     private final Gson gson;
-    private List<User> users;
-    private List<Product> products;
-    private List<Cart> carts;
-    private List<Order> orders;
+    private final Gson logGson;
+    private WriteAheadLog wal;
+    private LogFlusher flusher;
+
+    // Concurrency model: reads never lock. Writers take the stripe lock of the
+    // entity they change (userId for carts, productId for products, ...), so
+    // unrelated writes proceed in parallel. Published Cart and Product objects
+    // are never mutated afterwards; a write builds a copy and swaps it in.
+    private final StripedLock userLocks = new StripedLock(LOCK_STRIPES);
+    private final StripedLock productLocks = new StripedLock(LOCK_STRIPES);
+    private final StripedLock cartLocks = new StripedLock(LOCK_STRIPES);
+    private final StripedLock orderLocks = new StripedLock(LOCK_STRIPES);
+
+    // Writers hold the read side while applying a change and logging it;
+    // compaction holds the write side so no change falls between a snapshot
+    // and the log truncation that follows it.
+    private final ReadWriteLock persistenceLock = new ReentrantReadWriteLock();
+
+    private final Map<String, User> usersById = new ConcurrentHashMap<>();
+    private final Map<String, Product> productsById = new ConcurrentHashMap<>();
+    private final Map<String, Cart> cartsByUserId = new ConcurrentHashMap<>();
+    private final OrderStore orders;
+
+    // Catalog display order; only changes on product create/delete
+    private final List<String> productOrder = new CopyOnWriteArrayList<>();
+
+    // Secondary indexes, maintained by the put/remove helpers below
+    private final Map<String, User> usersByEmail = new ConcurrentHashMap<>();             // lower-cased email
+    private final Map<String, Set<String>> productIdsByCategory = new ConcurrentHashMap<>(); // lower-cased category
+    private final ProductSearchIndex productSearch = new ProductSearchIndex();
+    private final ProductFacetIndex productFacets = new ProductFacetIndex();
+    private final AtomicLong catalogVersion = new AtomicLong();
 
     private DataManager() {
         gson = new GsonBuilder().setPrettyPrinting().create();
+        logGson = new Gson();
+        orders = new OrderStore(Paths.get(ORDERS_DIR), new OrderStore.SegmentFiles() {
+            @Override
+            public List<Order> read(Path file) {
+                return loadFromFile(file.toString(), new TypeToken<List<Order>>(){}.getType(), BinarySnapshot::readOrders);
+            }
+
+            @Override
+            public void write(Path file, List<Order> segment) throws IOException {
+                saveToFile(file.toString(), segment, out -> BinarySnapshot.writeOrders(segment, out));
+            }
+        }, ORDER_HOT_MONTHS, ORDER_SEGMENT_CACHE_SIZE);
         initializeDataDirectory();
         loadData();
+        openWriteAheadLog();
     }
     
     private void initializeDataDirectory() {
@@ -53,7 +165,6 @@ public class DataManager {
             copyInitialDataIfNeeded("users.json", USERS_FILE);
             copyInitialDataIfNeeded("products.json", PRODUCTS_FILE);
             copyInitialDataIfNeeded("carts.json", CARTS_FILE);
-            copyInitialDataIfNeeded("orders.json", ORDERS_FILE);
         } catch (IOException e) {
             System.err.println("Failed to initialize data directory: " + e.getMessage());
         }
@@ -61,7 +172,7 @@ public class DataManager {
     
     private void copyInitialDataIfNeeded(String resourceName, String targetFile) {
         File target = new File(targetFile);
-        if (!target.exists()) {
+        if (!target.exists() && !Files.exists(binaryFileOf(target.toPath()))) {
             try (InputStream is = getClass().getClassLoader().getResourceAsStream("data/" + resourceName)) {
                 if (is != null) {
                     Files.copy(is, target.toPath());
@@ -77,6 +188,8 @@ public class DataManager {
         }
     }
 
+    static String getDataDir() { return DATA_DIR; }
+
     public static synchronized DataManager getInstance() {
         if (instance == null) {
             instance = new DataManager();
@@ -85,171 +198,688 @@ public class DataManager {
     }
 
     private void loadData() {
-        users = loadFromFile(USERS_FILE, new TypeToken<List<User>>(){}.getType());
-        products = loadFromFile(PRODUCTS_FILE, new TypeToken<List<Product>>(){}.getType());
-        carts = loadFromFile(CARTS_FILE, new TypeToken<List<Cart>>(){}.getType());
-        orders = loadFromFile(ORDERS_FILE, new TypeToken<List<Order>>(){}.getType());
+        List<User> users = loadFromFile(USERS_FILE, new TypeToken<List<User>>(){}.getType(), BinarySnapshot::readUsers);
+        List<Product> products = loadFromFile(PRODUCTS_FILE, new TypeToken<List<Product>>(){}.getType(), BinarySnapshot::readProducts);
+        List<Cart> carts = loadFromFile(CARTS_FILE, new TypeToken<List<Cart>>(){}.getType(), BinarySnapshot::readCarts);
+
+        if (users != null) users.forEach(this::putUser);
+        if (products != null) loadProducts(products);
+        if (carts != null) carts.forEach(this::putCart);
+        loadOrders();
+    }
 
-        if (users == null) users = new ArrayList<>();
-        if (products == null) products = new ArrayList<>();
-        if (carts == null) carts = new ArrayList<>();
-        if (orders == null) orders = new ArrayList<>();
+    // putProduct for a whole snapshot. The catalog order and the category sets
+    // are copied once at the end rather than once per product, which made
+    // startup quadratic in the size of the catalog.
+    private void loadProducts(List<Product> products) {
+        List<String> order = new ArrayList<>(products.size());
+        Map<String, Set<String>> byCategory = new HashMap<>();
+        for (Product product : products) {
+            Product previous = productsById.put(product.getId(), product);
+            if (previous == null) {
+                order.add(product.getId());
+            } else if (previous.getCategory() != null) {
+                byCategory.get(categoryKey(previous)).remove(product.getId());
+            }
+            if (product.getCategory() != null) {
+                byCategory.computeIfAbsent(categoryKey(product), key -> new LinkedHashSet<>()).add(product.getId());
+            }
+            productSearch.put(product);
+            productFacets.put(product);
+        }
+        productOrder.addAll(order);
+        byCategory.forEach((category, ids) -> productIdsByCategory.put(category, Collections.unmodifiableSet(ids)));
+        catalogVersion.incrementAndGet();
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> T loadFromFile(String filename, Type type) {
+    // Splits a single-file orders snapshot from older versions into monthly
+    // segments. The old file is renamed only once every segment is written, so
+    // an interrupted migration simply runs again on the next start.
+    private void loadOrders() {
         try {
-            File file = new File(filename);
-            if (!file.exists()) {
-                return null;
+            orders.open();
+            Path legacy = Paths.get(ORDERS_FILE);
+            Path legacyBinary = binaryFileOf(legacy);
+            if (!Files.exists(legacy) && !Files.exists(legacyBinary)) {
+                return;
+            }
+            List<Order> legacyOrders = loadFromFile(ORDERS_FILE, new TypeToken<List<Order>>(){}.getType(), BinarySnapshot::readOrders);
+            if (legacyOrders != null) {
+                legacyOrders.forEach(orders::put);
+            }
+            orders.markAllDirty();
+            orders.flush();
+            for (Path file : List.of(legacy, legacyBinary)) {
+                if (Files.exists(file)) {
+                    Files.move(file, file.resolveSibling(file.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            System.out.println("Migrated " + orders.size() + " orders into " + ORDERS_DIR);
+        } catch (IOException e) {
+            throw new IllegalStateException("Order segments in " + ORDERS_DIR + " are unusable: " + e.getMessage(), e);
+        }
+    }
+
+    // Index maintenance. Every write to the primary maps goes through these so the
+    // secondary indexes never drift. Callers hold the entity's stripe lock.
+    private void putUser(User user) {
+        User previous = usersById.put(user.getId(), user);
+        if (previous != null && !previous.getEmail().equalsIgnoreCase(user.getEmail())) {
+            usersByEmail.remove(previous.getEmail().toLowerCase(), previous);
+        }
+        usersByEmail.put(user.getEmail().toLowerCase(), user);
+    }
+
+    private void putProduct(Product product) {
+        Product previous = productsById.put(product.getId(), product);
+        if (previous == null) {
+            productOrder.add(product.getId());
+        } else if (!Objects.equals(categoryKey(previous), categoryKey(product))) {
+            unindexCategory(previous);
+        }
+        if (product.getCategory() != null) {
+            productIdsByCategory.compute(categoryKey(product), (key, ids) -> withId(ids, product.getId()));
+        }
+        productSearch.put(product);
+        productFacets.put(product);
+        catalogVersion.incrementAndGet();
+    }
+
+    private Product removeProduct(String id) {
+        Product removed = productsById.remove(id);
+        if (removed != null) {
+            productOrder.remove(id);
+            unindexCategory(removed);
+            productSearch.remove(id);
+            productFacets.remove(id);
+            catalogVersion.incrementAndGet();
+        }
+        return removed;
+    }
+
+    private static String categoryKey(Product product) {
+        return product.getCategory() == null ? null : product.getCategory().toLowerCase();
+    }
+
+    private void unindexCategory(Product product) {
+        if (product.getCategory() == null) return;
+        productIdsByCategory.computeIfPresent(categoryKey(product), (key, ids) -> withoutId(ids, product.getId()));
+    }
+
+    // Category sets are immutable and replaced on every change, like a
+    // copy-on-write set, so readers iterate them without locking
+    private static Set<String> withId(Set<String> ids, String id) {
+        if (ids != null && ids.contains(id)) return ids;
+        Set<String> copy = ids == null ? new LinkedHashSet<>() : new LinkedHashSet<>(ids);
+        copy.add(id);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private static Set<String> withoutId(Set<String> ids, String id) {
+        if (!ids.contains(id)) return ids;
+        Set<String> copy = new LinkedHashSet<>(ids);
+        copy.remove(id);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private void putCart(Cart cart) {
+        cartsByUserId.put(cart.getUserId(), cart);
+    }
+
+    private void putOrder(Order order) {
+        orders.put(order);
+    }
+
+    // Snapshot + log replay: the snapshots hold the state as of the last compaction,
+    // the log holds every mutation since. Records are idempotent (full puts and
+    // deletes by id), so replaying over an already-compacted snapshot is harmless.
+    // A log that cannot be opened or read stops startup, like an unreadable
+    // snapshot: running on without it would rewrite every snapshot on every
+    // commit, and the first compaction would truncate records never replayed.
+    private void openWriteAheadLog() {
+        try {
+            wal = new WriteAheadLog(WAL_FILE);
+            List<String> records = wal.readRecords();
+            int applied = 0;
+            for (String record : records) {
+                try {
+                    applyRecord(logGson.fromJson(record, JsonObject.class));
+                    applied++;
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    System.err.println("Skipping unreadable log record: " + e.getMessage());
+                }
             }
-            try (Reader reader = new FileReader(file)) {
-                return gson.fromJson(reader, type);
+            if (applied > 0) {
+                System.out.println("Replayed " + applied + " log records");
+                compact();
             }
+            flusher = new LogFlusher(wal, PERSISTENCE_MODE, GROUP_COMMIT_INTERVAL_MS,
+                GROUP_COMMIT_BATCH_SIZE, this::compact);
         } catch (IOException e) {
+            throw new IllegalStateException("Write-ahead log " + WAL_FILE + " is unusable: " + e.getMessage(), e);
+        }
+    }
+
+    private void applyRecord(JsonObject record) {
+        String type = record.get("type").getAsString();
+        boolean delete = "delete".equals(record.get("op").getAsString());
+        switch (type) {
+            case "user" -> putUser(logGson.fromJson(record.get("value"), User.class));
+            case "product" -> {
+                if (delete) {
+                    removeProduct(record.get("id").getAsString());
+                } else {
+                    putProduct(logGson.fromJson(record.get("value"), Product.class));
+                }
+            }
+            case "cart" -> putCart(logGson.fromJson(record.get("value"), Cart.class));
+            case "order" -> putOrder(logGson.fromJson(record.get("value"), Order.class));
+            case "batch" -> {
+                for (JsonElement element : record.getAsJsonArray("records")) {
+                    applyRecord(element.getAsJsonObject());
+                }
+            }
+            default -> System.err.println("Unknown log record type: " + type);
+        }
+    }
+
+    private JsonObject putRecord(String type, Object value) {
+        JsonObject record = new JsonObject();
+        record.addProperty("type", type);
+        record.addProperty("op", "put");
+        record.add("value", logGson.toJsonTree(value));
+        return record;
+    }
+
+    // Several records applied together on replay; written with a single append
+    private JsonObject batchRecord(List<JsonObject> records) {
+        JsonArray array = new JsonArray();
+        records.forEach(array::add);
+        JsonObject record = new JsonObject();
+        record.addProperty("type", "batch");
+        record.addProperty("op", "put");
+        record.add("records", array);
+        return record;
+    }
+
+    private JsonObject deleteRecord(String type, String id) {
+        JsonObject record = new JsonObject();
+        record.addProperty("type", type);
+        record.addProperty("op", "delete");
+        record.addProperty("id", id);
+        return record;
+    }
+
+    // Applies an in-memory change and logs the record describing the result as
+    // one step with respect to compaction. The caller holds the entity's stripe lock.
+    // The record is handed to the flusher under the read lock, which fixes its
+    // position in the log; waiting for it to be durable happens after the lock
+    // is released so a pending compaction is never blocked behind an fsync.
+    private void commit(Runnable change, Supplier<JsonObject> record) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> flushed;
+        persistenceLock.readLock().lock();
+        try {
+            change.run();
+            flushed = appendToLog(record.get());
+        } finally {
+            persistenceLock.readLock().unlock();
+        }
+        boolean logged = awaitFlush(flushed);
+        COMMIT_TIME.recordSince(start);
+        if (!logged || wal.getRecordCount() >= COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private CompletableFuture<Void> appendToLog(JsonObject record) {
+        return flusher.submit(logGson.toJson(record));
+    }
+
+    private boolean awaitFlush(CompletableFuture<Void> flushed) {
+        try {
+            flushed.join();
+            return true;
+        } catch (CompletionException e) {
             e.printStackTrace();
-            return null;
+            return false;
         }
     }
 
-    private void saveToFile(String filename, Object data) {
+    // Drains pending log writes and folds the log into the snapshots
+    @Override
+    public void shutdown() {
+        // Under the write lock no commit is between its change and its
+        // submit, so everything applied is either queued or refused
+        persistenceLock.writeLock().lock();
         try {
-            try (Writer writer = new FileWriter(filename)) {
-                gson.toJson(data, writer);
+            if (flusher != null) {
+                flusher.close();
+            }
+            compact();
+        } finally {
+            persistenceLock.writeLock().unlock();
+        }
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        synchronized (DataManager.class) {
+            if (instance == this) instance = null;
+        }
+    }
+
+    // Folds the log into fresh snapshots. The log is only truncated once all
+    // snapshots are written, so a crash or failed write in between just
+    // replays the log again.
+    public void compact() {
+        persistenceLock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            saveUsers();
+            saveProducts();
+            saveCarts();
+            saveOrders();
+            if (wal != null) {
+                wal.truncate();
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            COMPACTION_TIME.recordSince(start);
+            persistenceLock.writeLock().unlock();
         }
     }
 
+    // A snapshot that exists but cannot be read stops startup: carrying on with
+    // empty collections would let the next compaction overwrite the real data.
+    private <T> List<T> loadFromFile(String filename, Type type, SnapshotFiles.BufferParser<List<T>> binaryParser) {
+        Path path = Paths.get(filename);
+        Path binaryPath = binaryFileOf(path);
+        try {
+            Path current = SnapshotFiles.newer(binaryPath, path);
+            if (current == null) {
+                return null;
+            }
+            if (current == binaryPath) {
+                return SnapshotFiles.readMapped(binaryPath, binaryParser);
+            }
+            return SnapshotFiles.read(path, reader -> gson.fromJson(reader, type));
+        } catch (IOException | JsonParseException | BufferUnderflowException e) {
+            throw new IllegalStateException("Snapshot " + filename + " is unreadable: " + e.getMessage(), e);
+        }
+    }
+
+    private <T> void saveToFile(String filename, List<T> data, SnapshotFiles.BinaryContent binary) throws IOException {
+        long start = System.nanoTime();
+        Path path = Paths.get(filename);
+        if (BINARY_SNAPSHOTS) {
+            SnapshotFiles.writeBinary(binaryFileOf(path), binary, path);
+        } else {
+            SnapshotFiles.write(path, writer -> gson.toJson(data, writer), binaryFileOf(path));
+        }
+        SNAPSHOT_TIME.recordSince(start);
+    }
+
+    // users.json -> users.bin
+    static Path binaryFileOf(Path jsonFile) {
+        String name = jsonFile.getFileName().toString();
+        return jsonFile.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".bin");
+    }
+
     // User operations
-    public List<User> getUsers() { return new ArrayList<>(users); }
+    @Override
+    public List<User> getUsers() {
+        List<User> users = new ArrayList<>(usersById.values());
+        users.sort(Comparator.comparingLong(User::getCreatedAt));
+        return users;
+    }
 
+    @Override
     public User getUserById(String id) {
-        return users.stream().filter(u -> u.getId().equals(id)).findFirst().orElse(null);
+        return usersById.get(id);
     }
 
+    @Override
     public User getUserByEmail(String email) {
-        return users.stream().filter(u -> u.getEmail().equalsIgnoreCase(email)).findFirst().orElse(null);
+        return email == null ? null : usersByEmail.get(email.toLowerCase());
     }
 
+    @Override
     public User authenticateUser(String email, String password) {
         User user = getUserByEmail(email);
-        if (user != null && user.getPassword().equals(password)) {
+        PasswordService passwords = PasswordService.get();
+        if (!passwords.verify(password, user == null ? null : user.getPassword())) {
+            return null;
+        }
+        if (passwords.needsUpgrade(user.getPassword())) {
+            try {
+                user = upgradePassword(user, passwords.hash(password));
+            } catch (PasswordService.BusyException e) {
+                // The login stands; the upgrade waits for a quieter one
+            }
+        }
+        return user;
+    }
+
+    // Replaces a plaintext or weaker record with the new hash, as a copy so
+    // readers never see a half-updated user. A failed write leaves the old
+    // record, which is upgraded again on the next login.
+    private User upgradePassword(User user, String hash) {
+        ReentrantLock lock = userLocks.forKey(user.getEmail().toLowerCase());
+        lock.lock();
+        try {
+            if (usersById.get(user.getId()) != user) {
+                return user; // Changed since it was read; leave it to the next login
+            }
+            User upgraded = new User(user.getEmail(), hash, user.getFirstName(), user.getLastName());
+            upgraded.setId(user.getId());
+            upgraded.setRole(user.getRole());
+            upgraded.setCreatedAt(user.getCreatedAt());
+            commit(() -> putUser(upgraded), () -> putRecord("user", upgraded));
+            return upgraded;
+        } catch (RuntimeException e) {
+            System.err.println("Could not upgrade the password of user " + user.getId() + ": " + e.getMessage());
             return user;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
+    @Override
     public User createUser(User user) {
-        if (getUserByEmail(user.getEmail()) != null) {
-            return null; // Email already exists
+        // Striping by email makes the uniqueness check and the insert one step
+        ReentrantLock lock = userLocks.forKey(user.getEmail().toLowerCase());
+        lock.lock();
+        try {
+            if (getUserByEmail(user.getEmail()) != null) {
+                return null; // Email already exists
+            }
+            commit(() -> putUser(user), () -> putRecord("user", user));
+            return user;
+        } finally {
+            lock.unlock();
         }
-        users.add(user);
-        saveUsers();
-        return user;
     }
 
-    public void saveUsers() { saveToFile(USERS_FILE, users); }
+    public void saveUsers() throws IOException {
+        List<User> users = getUsers();
+        saveToFile(USERS_FILE, users, out -> BinarySnapshot.writeUsers(users, out));
+    }
 
     // Product operations
-    public List<Product> getProducts() { return new ArrayList<>(products); }
+    @Override
+    public List<Product> getProducts() {
+        List<Product> products = new ArrayList<>(productOrder.size());
+        for (String id : productOrder) {
+            Product product = productsById.get(id);
+            if (product != null) products.add(product);
+        }
+        return products;
+    }
 
+    @Override
     public List<Product> getProductsByCategory(String category) {
-        return products.stream()
-            .filter(p -> p.getCategory().equalsIgnoreCase(category))
-            .toList();
+        Set<String> ids = productIdsByCategory.get(category.toLowerCase());
+        if (ids == null) return List.of();
+        return ids.stream().map(productsById::get).filter(Objects::nonNull).toList();
     }
 
+    @Override
     public Product getProductById(String id) {
-        return products.stream().filter(p -> p.getId().equals(id)).findFirst().orElse(null);
+        return productsById.get(id);
     }
 
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    @Override
+    public ProductPage findProducts(ProductQuery query) {
+        return productFacets.query(query);
+    }
+
+    @Override
+    public List<Product> searchProducts(String query, int limit) {
+        return productSearch.search(query, limit).stream()
+            .map(productsById::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
     public Product createProduct(Product product) {
-        products.add(product);
-        saveProducts();
-        return product;
+        ReentrantLock lock = productLocks.forKey(product.getId());
+        lock.lock();
+        try {
+            commit(() -> putProduct(product), () -> putRecord("product", product));
+            return product;
+        } finally {
+            lock.unlock();
+        }
     }
 
+    @Override
     public Product updateProduct(String id, Product updatedProduct) {
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getId().equals(id)) {
-                updatedProduct.setId(id);
-                updatedProduct.setCreatedAt(products.get(i).getCreatedAt());
-                products.set(i, updatedProduct);
-                saveProducts();
-                return updatedProduct;
+        ReentrantLock lock = productLocks.forKey(id);
+        lock.lock();
+        try {
+            Product existing = productsById.get(id);
+            if (existing == null) {
+                return null;
             }
+            updatedProduct.setId(id);
+            updatedProduct.setCreatedAt(existing.getCreatedAt());
+            commit(() -> putProduct(updatedProduct), () -> putRecord("product", updatedProduct));
+            return updatedProduct;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
+    @Override
     public boolean deleteProduct(String id) {
-        boolean removed = products.removeIf(p -> p.getId().equals(id));
-        if (removed) saveProducts();
-        return removed;
+        ReentrantLock lock = productLocks.forKey(id);
+        lock.lock();
+        try {
+            if (!productsById.containsKey(id)) {
+                return false;
+            }
+            commit(() -> removeProduct(id), () -> deleteRecord("product", id));
+            return true;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public void saveProducts() { saveToFile(PRODUCTS_FILE, products); }
+    public void saveProducts() throws IOException {
+        List<Product> products = getProducts();
+        saveToFile(PRODUCTS_FILE, products, out -> BinarySnapshot.writeProducts(products, out));
+    }
 
     // Cart operations
+    // The returned cart is a read-only view; change carts through the methods below.
+    @Override
     public Cart getCartByUserId(String userId) {
-        Cart cart = carts.stream().filter(c -> c.getUserId().equals(userId)).findFirst().orElse(null);
-        if (cart == null) {
-            cart = new Cart(userId);
-            carts.add(cart);
-            saveCarts();
+        Cart cart = cartsByUserId.get(userId);
+        // An empty cart is equivalent to no cart, so there is nothing to store yet
+        return cart != null ? cart : new Cart(userId);
+    }
+
+    @Override
+    public Cart addCartItem(String userId, String productId, int quantity) {
+        return modifyCart(userId, cart -> cart.addItem(productId, quantity));
+    }
+
+    @Override
+    public Cart updateCartItem(String userId, String productId, int quantity) {
+        return modifyCart(userId, cart -> cart.updateItem(productId, quantity));
+    }
+
+    @Override
+    public Cart removeCartItem(String userId, String productId) {
+        return modifyCart(userId, cart -> cart.removeItem(productId));
+    }
+
+    // Copy-on-write under the user's stripe: concurrent readers keep seeing the
+    // previous cart until the modified copy is swapped in.
+    private Cart modifyCart(String userId, Consumer<Cart> change) {
+        ReentrantLock lock = cartLocks.forKey(userId);
+        lock.lock();
+        try {
+            Cart cart = new Cart(getCartByUserId(userId));
+            change.accept(cart);
+            commit(() -> putCart(cart), () -> putRecord("cart", cart));
+            return cart;
+        } finally {
+            lock.unlock();
         }
-        return cart;
     }
 
+    @Override
     public Cart updateCart(Cart cart) {
-        for (int i = 0; i < carts.size(); i++) {
-            if (carts.get(i).getUserId().equals(cart.getUserId())) {
-                carts.set(i, cart);
-                saveCarts();
-                return cart;
-            }
+        ReentrantLock lock = cartLocks.forKey(cart.getUserId());
+        lock.lock();
+        try {
+            Cart copy = new Cart(cart);
+            commit(() -> putCart(copy), () -> putRecord("cart", copy));
+            return copy;
+        } finally {
+            lock.unlock();
         }
-        carts.add(cart);
-        saveCarts();
-        return cart;
     }
 
+    @Override
     public void clearCart(String userId) {
-        Cart cart = getCartByUserId(userId);
-        cart.clear();
-        saveCarts();
+        modifyCart(userId, Cart::clear);
     }
 
-    public void saveCarts() { saveToFile(CARTS_FILE, carts); }
+    public void saveCarts() throws IOException {
+        List<Cart> carts = new ArrayList<>(cartsByUserId.values());
+        saveToFile(CARTS_FILE, carts, out -> BinarySnapshot.writeCarts(carts, out));
+    }
 
     // Order operations
-    public List<Order> getOrders() { return new ArrayList<>(orders); }
+    @Override
+    public List<Order> getOrders() {
+        return orders.getAll();
+    }
+
+    @Override
+    public List<Order> getOrdersPage(int offset, int limit) {
+        return orders.getPage(offset, limit);
+    }
+
+    @Override
+    public List<Order> findOrders(OrderQuery query) {
+        return orders.find(query);
+    }
 
+    @Override
     public List<Order> getOrdersByUserId(String userId) {
-        return orders.stream().filter(o -> o.getUserId().equals(userId)).toList();
+        return orders.getByUserId(userId);
     }
 
+    @Override
     public Order getOrderById(String id) {
-        return orders.stream().filter(o -> o.getId().equals(id)).findFirst().orElse(null);
+        return orders.get(id);
     }
 
+    @Override
     public Order createOrder(Order order) {
-        orders.add(order);
-        saveOrders();
-        return order;
+        ReentrantLock lock = orderLocks.forKey(order.getId());
+        lock.lock();
+        try {
+            commit(() -> putOrder(order), () -> putRecord("order", order));
+            return order;
+        } finally {
+            lock.unlock();
+        }
     }
 
+    @Override
     public Order updateOrderStatus(String orderId, String status) {
-        Order order = getOrderById(orderId);
-        if (order != null) {
-            order.setStatus(status);
-            saveOrders();
+        ReentrantLock lock = orderLocks.forKey(orderId);
+        lock.lock();
+        try {
+            Order order = getOrderById(orderId);
+            if (order == null) {
+                return null;
+            }
+            // Replaced rather than changed in place so its segment is marked for saving
+            Order updated = new Order(order);
+            updated.setStatus(status);
+            commit(() -> putOrder(updated), () -> putRecord("order", updated));
+            return updated;
+        } finally {
+            lock.unlock();
         }
-        return order;
     }
 
-    public void saveOrders() { saveToFile(ORDERS_FILE, orders); }
-}
+    // Turns the user's cart into an order. Stock for every line is validated and
+    // reserved while holding the cart's stripe and the stripes of all products
+    // involved (always in that order), so concurrent checkouts cannot oversell.
+    // The order, the new stock levels and the emptied cart are logged as one
+    // batch record, i.e. a single append per checkout.
+    @Override
+    public Order checkout(String userId, String shippingAddress) throws CheckoutException {
+        ReentrantLock cartLock = cartLocks.forKey(userId);
+        cartLock.lock();
+        try {
+            Cart cart = getCartByUserId(userId);
+            List<ReentrantLock> stockLocks = productLocks.forKeys(
+                cart.getItems().stream().map(CartItem::getProductId).toList());
+            stockLocks.forEach(ReentrantLock::lock);
+            try {
+                List<OrderItem> orderItems = new ArrayList<>();
+                List<Product> reserved = new ArrayList<>();
+                double totalAmount = 0;
+
+                for (CartItem cartItem : cart.getItems()) {
+                    Product product = productsById.get(cartItem.getProductId());
+                    if (product == null) {
+                        continue; // Product was removed from the catalog since it was added
+                    }
+                    if (cartItem.getQuantity() > product.getStock()) {
+                        throw new CheckoutException("Insufficient stock for " + product.getName());
+                    }
+                    Product updated = new Product(product);
+                    updated.setStock(product.getStock() - cartItem.getQuantity());
+                    reserved.add(updated);
+                    orderItems.add(new OrderItem(
+                        product.getId(), product.getName(), cartItem.getQuantity(), product.getPrice()));
+                    totalAmount += product.getPrice() * cartItem.getQuantity();
+                }
+
+                if (orderItems.isEmpty()) {
+                    throw new CheckoutException("Cart is empty");
+                }
+
+                Order order = new Order(userId, orderItems, totalAmount, shippingAddress);
+                Cart emptyCart = new Cart(userId);
+                commit(() -> {
+                    reserved.forEach(this::putProduct);
+                    putOrder(order);
+                    putCart(emptyCart);
+                }, () -> {
+                    List<JsonObject> records = new ArrayList<>();
+                    reserved.forEach(p -> records.add(putRecord("product", p)));
+                    records.add(putRecord("order", order));
+                    records.add(putRecord("cart", emptyCart));
+                    return batchRecord(records);
+                });
+                return order;
+            } finally {
+                stockLocks.forEach(ReentrantLock::unlock);
+            }
+        } finally {
+            cartLock.unlock();
+        }
+    }
 
+    public void saveOrders() throws IOException {
+        orders.flush();
+    }
+}
@@ -0,0 +1,717 @@
+package com.aurawell.services;
+
+import com.aurawell.models.*;
+import com.aurawell.services.ConnectionPool.PooledConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Repository backed by an embedded SQL database (H2 by default). Orders and
+// their items live in indexed tables, so order history does not have to fit
+// in heap and listings can be paged by the database.
+public class JdbcRepository implements Repository {
+    private static final int LOCK_STRIPES = 64;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS users ("
+            + "id VARCHAR(64) PRIMARY KEY, email VARCHAR(255) NOT NULL, email_key VARCHAR(255) NOT NULL UNIQUE, "
+            + "password VARCHAR(255), first_name VARCHAR(255), last_name VARCHAR(255), role VARCHAR(32), "
+            + "created_at BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS products ("
+            + "seq BIGINT GENERATED BY DEFAULT AS IDENTITY, id VARCHAR(64) NOT NULL, name VARCHAR(255), "
+            + "description VARCHAR, price DOUBLE PRECISION NOT NULL, stock INT NOT NULL, category VARCHAR(64), "
+            + "category_key VARCHAR(64), age_group VARCHAR(32), image_url VARCHAR(1024), created_at BIGINT NOT NULL, "
+            + "CONSTRAINT pk_products PRIMARY KEY (id))",
+        "CREATE INDEX IF NOT EXISTS idx_products_category ON products (category_key)",
+        "CREATE INDEX IF NOT EXISTS idx_products_seq ON products (seq)",
+        "CREATE TABLE IF NOT EXISTS cart_items ("
+            + "seq BIGINT GENERATED BY DEFAULT AS IDENTITY, user_id VARCHAR(64) NOT NULL, "
+            + "product_id VARCHAR(64) NOT NULL, quantity INT NOT NULL, "
+            + "CONSTRAINT pk_cart_items PRIMARY KEY (user_id, product_id))",
+        "CREATE TABLE IF NOT EXISTS orders ("
+            + "id VARCHAR(64) PRIMARY KEY, user_id VARCHAR(64) NOT NULL, total_amount DOUBLE PRECISION NOT NULL, "
+            + "status VARCHAR(32), shipping_address VARCHAR, created_at BIGINT NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS idx_orders_user ON orders (user_id, created_at)",
+        "CREATE INDEX IF NOT EXISTS idx_orders_created ON orders (created_at, id)",
+        "CREATE TABLE IF NOT EXISTS order_items ("
+            + "order_id VARCHAR(64) NOT NULL, line_no INT NOT NULL, product_id VARCHAR(64), product_name VARCHAR(255), "
+            + "quantity INT NOT NULL, price_at_purchase DOUBLE PRECISION NOT NULL, "
+            + "CONSTRAINT pk_order_items PRIMARY KEY (order_id, line_no))"
+    };
+
+    private static final String PRODUCT_COLUMNS =
+        "id, name, description, price, stock, category, age_group, image_url, created_at";
+    private static final String ORDER_COLUMNS =
+        "o.id, o.user_id, o.total_amount, o.status, o.shipping_address, o.created_at, "
+            + "i.product_id, i.product_name, i.quantity, i.price_at_purchase";
+
+    private interface SqlWork<T> {
+        T run(PooledConnection connection) throws SQLException;
+    }
+
+    private final ConnectionPool pool;
+
+    // Carts are read-modify-write per user, as in DataManager
+    private final StripedLock cartLocks = new StripedLock(LOCK_STRIPES);
+
+    // A product's table write, the re-read of its row and the index update run
+    // under its stripe, so the indexes see the writes in the order the table did
+    private final StripedLock productLocks = new StripedLock(LOCK_STRIPES);
+
+    // Built from the table on startup, then kept current by the product writes below
+    private final ProductSearchIndex productSearch = new ProductSearchIndex();
+    private final ProductFacetIndex productFacets = new ProductFacetIndex();
+    private final AtomicLong catalogVersion = new AtomicLong();
+
+    public JdbcRepository(String url, int poolSize) {
+        this.pool = new ConnectionPool(url, poolSize);
+        withConnection(connection -> {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            return null;
+        });
+        for (Product product : getProducts()) {
+            productSearch.put(product);
+            productFacets.put(product);
+        }
+    }
+
+    private <T> T withConnection(SqlWork<T> work) {
+        PooledConnection connection = null;
+        try {
+            connection = pool.borrow();
+            return work.run(connection);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Database error: " + e.getMessage(), e);
+        } finally {
+            if (connection != null) pool.release(connection);
+        }
+    }
+
+    private <T> T inTransaction(SqlWork<T> work) {
+        return withConnection(connection -> {
+            connection.getConnection().setAutoCommit(false);
+            T result = work.run(connection);
+            connection.getConnection().commit();
+            connection.getConnection().setAutoCommit(true);
+            return result;
+        });
+    }
+
+    public boolean isEmpty() {
+        return withConnection(connection -> {
+            try (ResultSet rs = connection.prepare("SELECT COUNT(*) FROM users").executeQuery()) {
+                rs.next();
+                return rs.getLong(1) == 0;
+            }
+        });
+    }
+
+    // One-time migration, e.g. from the JSON store on first start
+    public void importFrom(Repository source) {
+        source.getUsers().forEach(this::createUser);
+        source.getProducts().forEach(this::createProduct);
+        for (User user : source.getUsers()) {
+            Cart cart = source.getCartByUserId(user.getId());
+            if (!cart.getItems().isEmpty()) updateCart(cart);
+        }
+        source.getOrders().forEach(this::createOrder);
+    }
+
+    // User operations
+    @Override
+    public List<User> getUsers() {
+        return withConnection(connection -> {
+            PreparedStatement statement = connection.prepare(
+                "SELECT id, email, password, first_name, last_name, role, created_at FROM users ORDER BY created_at");
+            List<User> users = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) users.add(readUser(rs));
+            }
+            return users;
+        });
+    }
+
+    @Override
+    public User getUserById(String id) {
+        return findUser("SELECT id, email, password, first_name, last_name, role, created_at FROM users WHERE id = ?", id);
+    }
+
+    @Override
+    public User getUserByEmail(String email) {
+        if (email == null) return null;
+        return findUser("SELECT id, email, password, first_name, last_name, role, created_at FROM users WHERE email_key = ?",
+            email.toLowerCase());
+    }
+
+    private User findUser(String sql, String key) {
+        return withConnection(connection -> {
+            PreparedStatement statement = connection.prepare(sql);
+            statement.setString(1, key);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? readUser(rs) : null;
+            }
+        });
+    }
+
+    private static User readUser(ResultSet rs) throws SQLException {
+        User user = new User(rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+        user.setId(rs.getString(1));
+        user.setRole(rs.getString(6));
+        user.setCreatedAt(rs.getLong(7));
+        return user;
+    }
+
+    @Override
+    public User authenticateUser(String email, String password) {
+        User user = getUserByEmail(email);
+        PasswordService passwords = PasswordService.get();
+        if (!passwords.verify(password, user == null ? null : user.getPassword())) {
+            return null;
+        }
+        if (passwords.needsUpgrade(user.getPassword())) {
+            try {
+                upgradePassword(user, passwords.hash(password));
+            } catch (PasswordService.BusyException e) {
+                // The login stands; the upgrade waits for a quieter one
+            }
+        }
+        return user;
+    }
+
+    // Replaces a plaintext or weaker record with the new hash, unless the
+    // record changed since it was read; a failure is retried on the next login
+    private void upgradePassword(User user, String hash) {
+        try {
+            int updated = withConnection(connection -> {
+                PreparedStatement statement = connection.prepare(
+                    "UPDATE users SET password = ? WHERE id = ? AND password = ?");
+                statement.setString(1, hash);
+                statement.setString(2, user.getId());
+                statement.setString(3, user.getPassword());
+                return statement.executeUpdate();
+            });
+            if (updated == 1) user.setPassword(hash);
+        } catch (IllegalStateException e) {
+            System.err.println("Could not upgrade the password of user " + user.getId() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public User createUser(User user) {
+        try {
+            return withConnection(connection -> {
+                PreparedStatement statement = connection.prepare(
+                    "INSERT INTO users (id, email, email_key, password, first_name, last_name, role, created_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                statement.setString(1, user.getId());
+                statement.setString(2, user.getEmail());
+                statement.setString(3, user.getEmail().toLowerCase());
+                statement.setString(4, user.getPassword());
+                statement.setString(5, user.getFirstName());
+                statement.setString(6, user.getLastName());
+                statement.setString(7, user.getRole());
+                statement.setLong(8, user.getCreatedAt());
+                statement.executeUpdate();
+                return user;
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof SQLException sql && UNIQUE_VIOLATION.equals(sql.getSQLState())) {
+                return null; // Email already exists
+            }
+            throw e;
+        }
+    }
+
+    // Product operations
+    @Override
+    public List<Product> getProducts() {
+        return queryProducts("SELECT " + PRODUCT_COLUMNS + " FROM products ORDER BY seq", null);
+    }
+
+    @Override
+    public List<Product> getProductsByCategory(String category) {
+        return queryProducts("SELECT " + PRODUCT_COLUMNS + " FROM products WHERE category_key = ? ORDER BY seq",
+            category.toLowerCase());
+    }
+
+    @Override
+    public Product getProductById(String id) {
+        List<Product> products = queryProducts("SELECT " + PRODUCT_COLUMNS + " FROM products WHERE id = ?", id);
+        return products.isEmpty() ? null : products.get(0);
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    // Served from the facet index, which holds the latest copy of each product
+    @Override
+    public ProductPage findProducts(ProductQuery query) {
+        return productFacets.query(query);
+    }
+
+    @Override
+    public List<Product> searchProducts(String query, int limit) {
+        List<Product> products = new ArrayList<>();
+        for (String id : productSearch.search(query, limit)) {
+            Product product = getProductById(id);
+            if (product != null) products.add(product);
+        }
+        return products;
+    }
+
+    private List<Product> queryProducts(String sql, String parameter) {
+        return withConnection(connection -> {
+            PreparedStatement statement = connection.prepare(sql);
+            if (parameter != null) statement.setString(1, parameter);
+            List<Product> products = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) products.add(readProduct(rs));
+            }
+            return products;
+        });
+    }
+
+    private static Product readProduct(ResultSet rs) throws SQLException {
+        Product product = new Product(rs.getString(2), rs.getString(3), rs.getDouble(4), rs.getInt(5),
+            rs.getString(6), rs.getString(7), rs.getString(8));
+        product.setId(rs.getString(1));
+        product.setCreatedAt(rs.getLong(9));
+        return product;
+    }
+
+    @Override
+    public Product createProduct(Product product) {
+        ReentrantLock lock = productLocks.forKey(product.getId());
+        lock.lock();
+        try {
+            return withConnection(connection -> {
+                PreparedStatement statement = connection.prepare(
+                    "INSERT INTO products (" + PRODUCT_COLUMNS + ", category_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                statement.setString(1, product.getId());
+                bindProductFields(statement, product, 2);
+                statement.setLong(9, product.getCreatedAt());
+                statement.setString(10, product.getCategory() == null ? null : product.getCategory().toLowerCase());
+                statement.executeUpdate();
+                return reindexProduct(connection, product.getId());
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null if there is no such product, including one deleted concurrently
+    @Override
+    public Product updateProduct(String id, Product updatedProduct) {
+        ReentrantLock lock = productLocks.forKey(id);
+        lock.lock();
+        try {
+            return withConnection(connection -> {
+                PreparedStatement statement = connection.prepare(
+                    "UPDATE products SET name = ?, description = ?, price = ?, stock = ?, category = ?, age_group = ?, "
+                        + "image_url = ?, category_key = ? WHERE id = ?");
+                bindProductFields(statement, updatedProduct, 1);
+                statement.setString(8, updatedProduct.getCategory() == null ? null : updatedProduct.getCategory().toLowerCase());
+                statement.setString(9, id);
+                if (statement.executeUpdate() == 0) {
+                    return null;
+                }
+                return reindexProduct(connection, id);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Re-reads the row and puts what the table now holds into the indexes, or
+    // drops the product if the row is gone. The caller holds the product's stripe.
+    private Product reindexProduct(PooledConnection connection, String id) throws SQLException {
+        PreparedStatement select = connection.prepare("SELECT " + PRODUCT_COLUMNS + " FROM products WHERE id = ?");
+        select.setString(1, id);
+        Product product = null;
+        try (ResultSet rs = select.executeQuery()) {
+            if (rs.next()) product = readProduct(rs);
+        }
+        if (product != null) {
+            productSearch.put(product);
+            productFacets.put(product);
+        } else {
+            productSearch.remove(id);
+            productFacets.remove(id);
+        }
+        catalogVersion.incrementAndGet();
+        return product;
+    }
+
+    private static void bindProductFields(PreparedStatement statement, Product product, int first) throws SQLException {
+        statement.setString(first, product.getName());
+        statement.setString(first + 1, product.getDescription());
+        statement.setDouble(first + 2, product.getPrice());
+        statement.setInt(first + 3, product.getStock());
+        statement.setString(first + 4, product.getCategory());
+        statement.setString(first + 5, product.getAgeGroup());
+        statement.setString(first + 6, product.getImageUrl());
+    }
+
+    @Override
+    public boolean deleteProduct(String id) {
+        ReentrantLock lock = productLocks.forKey(id);
+        lock.lock();
+        try {
+            return withConnection(connection -> {
+                PreparedStatement statement = connection.prepare("DELETE FROM products WHERE id = ?");
+                statement.setString(1, id);
+                if (statement.executeUpdate() == 0) {
+                    return false;
+                }
+                productSearch.remove(id);
+                productFacets.remove(id);
+                catalogVersion.incrementAndGet();
+                return true;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Cart operations
+    @Override
+    public Cart getCartByUserId(String userId) {
+        return withConnection(connection -> readCart(connection, userId));
+    }
+
+    private static Cart readCart(PooledConnection connection, String userId) throws SQLException {
+        PreparedStatement statement = connection.prepare(
+            "SELECT product_id, quantity FROM cart_items WHERE user_id = ? ORDER BY seq");
+        statement.setString(1, userId);
+        Cart cart = new Cart(userId);
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) cart.getItems().add(new CartItem(rs.getString(1), rs.getInt(2)));
+        }
+        return cart;
+    }
+
+    @Override
+    public Cart addCartItem(String userId, String productId, int quantity) {
+        return withCartLock(userId, connection -> {
+            PreparedStatement update = connection.prepare(
+                "UPDATE cart_items SET quantity = quantity + ? WHERE user_id = ? AND product_id = ?");
+            update.setInt(1, quantity);
+            update.setString(2, userId);
+            update.setString(3, productId);
+            if (update.executeUpdate() == 0) {
+                insertCartItem(connection, userId, productId, quantity);
+            }
+            return readCart(connection, userId);
+        });
+    }
+
+    @Override
+    public Cart updateCartItem(String userId, String productId, int quantity) {
+        if (quantity <= 0) {
+            return removeCartItem(userId, productId);
+        }
+        return withCartLock(userId, connection -> {
+            PreparedStatement update = connection.prepare(
+                "UPDATE cart_items SET quantity = ? WHERE user_id = ? AND product_id = ?");
+            update.setInt(1, quantity);
+            update.setString(2, userId);
+            update.setString(3, productId);
+            update.executeUpdate();
+            return readCart(connection, userId);
+        });
+    }
+
+    @Override
+    public Cart removeCartItem(String userId, String productId) {
+        return withCartLock(userId, connection -> {
+            PreparedStatement delete = connection.prepare(
+                "DELETE FROM cart_items WHERE user_id = ? AND product_id = ?");
+            delete.setString(1, userId);
+            delete.setString(2, productId);
+            delete.executeUpdate();
+            return readCart(connection, userId);
+        });
+    }
+
+    @Override
+    public Cart updateCart(Cart cart) {
+        return withCartLock(cart.getUserId(), connection -> {
+            connection.getConnection().setAutoCommit(false);
+            deleteCartItems(connection, cart.getUserId());
+            for (CartItem item : cart.getItems()) {
+                insertCartItem(connection, cart.getUserId(), item.getProductId(), item.getQuantity());
+            }
+            connection.getConnection().commit();
+            connection.getConnection().setAutoCommit(true);
+            return new Cart(cart);
+        });
+    }
+
+    @Override
+    public void clearCart(String userId) {
+        withCartLock(userId, connection -> {
+            deleteCartItems(connection, userId);
+            return null;
+        });
+    }
+
+    private <T> T withCartLock(String userId, SqlWork<T> work) {
+        ReentrantLock lock = cartLocks.forKey(userId);
+        lock.lock();
+        try {
+            return withConnection(work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void insertCartItem(PooledConnection connection, String userId, String productId, int quantity)
+            throws SQLException {
+        PreparedStatement insert = connection.prepare(
+            "INSERT INTO cart_items (user_id, product_id, quantity) VALUES (?, ?, ?)");
+        insert.setString(1, userId);
+        insert.setString(2, productId);
+        insert.setInt(3, quantity);
+        insert.executeUpdate();
+    }
+
+    private static void deleteCartItems(PooledConnection connection, String userId) throws SQLException {
+        PreparedStatement delete = connection.prepare("DELETE FROM cart_items WHERE user_id = ?");
+        delete.setString(1, userId);
+        delete.executeUpdate();
+    }
+
+    // Order operations
+    @Override
+    public List<Order> getOrders() {
+        return queryOrders("SELECT " + ORDER_COLUMNS + " FROM orders o LEFT JOIN order_items i ON i.order_id = o.id "
+            + "ORDER BY o.created_at, o.id, i.line_no", statement -> {});
+    }
+
+    @Override
+    public List<Order> getOrdersPage(int offset, int limit) {
+        return queryOrders("SELECT " + ORDER_COLUMNS + " FROM "
+            + "(SELECT * FROM orders ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?) o "
+            + "LEFT JOIN order_items i ON i.order_id = o.id ORDER BY o.created_at DESC, o.id DESC, i.line_no",
+            statement -> {
+                statement.setInt(1, limit);
+                statement.setInt(2, offset);
+            });
+    }
+
+    // Keyset pagination over idx_orders_created; the filters are optional, so
+    // the statement text varies and each variant gets its own cached statement
+    @Override
+    public List<Order> findOrders(OrderQuery query) {
+        StringBuilder where = new StringBuilder("WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        if (query.getStatus() != null) {
+            where.append(" AND status = ?");
+            parameters.add(query.getStatus());
+        }
+        if (query.getUserId() != null) {
+            where.append(" AND user_id = ?");
+            parameters.add(query.getUserId());
+        }
+        if (query.getFrom() != null) {
+            where.append(" AND created_at >= ?");
+            parameters.add(query.getFrom());
+        }
+        if (query.getTo() != null) {
+            where.append(" AND created_at < ?");
+            parameters.add(query.getTo());
+        }
+        String direction = query.isNewestFirst() ? "DESC" : "ASC";
+        if (query.getAfterId() != null) {
+            String after = query.isNewestFirst() ? "<" : ">";
+            where.append(" AND (created_at ").append(after).append(" ? OR (created_at = ? AND id ").append(after).append(" ?))");
+            parameters.add(query.getAfterCreatedAt());
+            parameters.add(query.getAfterCreatedAt());
+            parameters.add(query.getAfterId());
+        }
+        parameters.add(query.getLimit());
+        return queryOrders("SELECT " + ORDER_COLUMNS + " FROM "
+            + "(SELECT * FROM orders " + where + " ORDER BY created_at " + direction + ", id " + direction + " LIMIT ?) o "
+            + "LEFT JOIN order_items i ON i.order_id = o.id "
+            + "ORDER BY o.created_at " + direction + ", o.id " + direction + ", i.line_no",
+            statement -> {
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+            });
+    }
+
+    @Override
+    public List<Order> getOrdersByUserId(String userId) {
+        return queryOrders("SELECT " + ORDER_COLUMNS + " FROM orders o LEFT JOIN order_items i ON i.order_id = o.id "
+            + "WHERE o.user_id = ? ORDER BY o.created_at, o.id, i.line_no", statement -> statement.setString(1, userId));
+    }
+
+    @Override
+    public Order getOrderById(String id) {
+        List<Order> orders = queryOrders("SELECT " + ORDER_COLUMNS
+            + " FROM orders o LEFT JOIN order_items i ON i.order_id = o.id WHERE o.id = ? ORDER BY i.line_no",
+            statement -> statement.setString(1, id));
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    // Rows arrive grouped by order, one row per item
+    private List<Order> queryOrders(String sql, Binder binder) {
+        return withConnection(connection -> {
+            PreparedStatement statement = connection.prepare(sql);
+            binder.bind(statement);
+            List<Order> orders = new ArrayList<>();
+            Order current = null;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String id = rs.getString(1);
+                    if (current == null || !current.getId().equals(id)) {
+                        current = new Order(rs.getString(2), new ArrayList<>(), rs.getDouble(3), rs.getString(5));
+                        current.setId(id);
+                        current.setStatus(rs.getString(4));
+                        current.setCreatedAt(rs.getLong(6));
+                        orders.add(current);
+                    }
+                    if (rs.getString(7) != null) {
+                        current.getItems().add(new OrderItem(rs.getString(7), rs.getString(8), rs.getInt(9), rs.getDouble(10)));
+                    }
+                }
+            }
+            return orders;
+        });
+    }
+
+    @Override
+    public Order createOrder(Order order) {
+        return inTransaction(connection -> {
+            insertOrder(connection, order);
+            return order;
+        });
+    }
+
+    private static void insertOrder(PooledConnection connection, Order order) throws SQLException {
+        PreparedStatement insert = connection.prepare(
+            "INSERT INTO orders (id, user_id, total_amount, status, shipping_address, created_at) VALUES (?, ?, ?, ?, ?, ?)");
+        insert.setString(1, order.getId());
+        insert.setString(2, order.getUserId());
+        insert.setDouble(3, order.getTotalAmount());
+        insert.setString(4, order.getStatus());
+        insert.setString(5, order.getShippingAddress());
+        insert.setLong(6, order.getCreatedAt());
+        insert.executeUpdate();
+
+        PreparedStatement item = connection.prepare(
+            "INSERT INTO order_items (order_id, line_no, product_id, product_name, quantity, price_at_purchase) "
+                + "VALUES (?, ?, ?, ?, ?, ?)");
+        int line = 0;
+        for (OrderItem orderItem : order.getItems()) {
+            item.setString(1, order.getId());
+            item.setInt(2, line++);
+            item.setString(3, orderItem.getProductId());
+            item.setString(4, orderItem.getProductName());
+            item.setInt(5, orderItem.getQuantity());
+            item.setDouble(6, orderItem.getPriceAtPurchase());
+            item.addBatch();
+        }
+        item.executeBatch();
+    }
+
+    @Override
+    public Order updateOrderStatus(String orderId, String status) {
+        boolean updated = withConnection(connection -> {
+            PreparedStatement statement = connection.prepare("UPDATE orders SET status = ? WHERE id = ?");
+            statement.setString(1, status);
+            statement.setString(2, orderId);
+            return statement.executeUpdate() > 0;
+        });
+        return updated ? getOrderById(orderId) : null;
+    }
+
+    // Stock is reserved with a conditional decrement per line, so the database
+    // rejects any line that would go negative; the whole transaction is then
+    // rolled back and nothing is written.
+    @Override
+    public Order checkout(String userId, String shippingAddress) throws CheckoutException {
+        ReentrantLock lock = cartLocks.forKey(userId);
+        lock.lock();
+        PooledConnection connection = null;
+        try {
+            connection = pool.borrow();
+            connection.getConnection().setAutoCommit(false);
+            Cart cart = readCart(connection, userId);
+            List<OrderItem> orderItems = new ArrayList<>();
+            double totalAmount = 0;
+
+            PreparedStatement reserve = connection.prepare(
+                "UPDATE products SET stock = stock - ? WHERE id = ? AND stock >= ?");
+            PreparedStatement select = connection.prepare("SELECT " + PRODUCT_COLUMNS + " FROM products WHERE id = ?");
+            for (CartItem cartItem : cart.getItems()) {
+                select.setString(1, cartItem.getProductId());
+                Product product;
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) continue; // Product was removed from the catalog since it was added
+                    product = readProduct(rs);
+                }
+                reserve.setInt(1, cartItem.getQuantity());
+                reserve.setString(2, product.getId());
+                reserve.setInt(3, cartItem.getQuantity());
+                if (reserve.executeUpdate() == 0) {
+                    connection.getConnection().rollback();
+                    throw new CheckoutException("Insufficient stock for " + product.getName());
+                }
+                orderItems.add(new OrderItem(product.getId(), product.getName(), cartItem.getQuantity(), product.getPrice()));
+                totalAmount += product.getPrice() * cartItem.getQuantity();
+            }
+
+            if (orderItems.isEmpty()) {
+                connection.getConnection().rollback();
+                throw new CheckoutException("Cart is empty");
+            }
+
+            Order order = new Order(userId, orderItems, totalAmount, shippingAddress);
+            insertOrder(connection, order);
+            deleteCartItems(connection, userId);
+            connection.getConnection().commit();
+            // Stock changed in the table; refresh the indexed copies (in-stock
+            // facet). Each row is read under its stripe, so it is never older
+            // than an admin edit already indexed.
+            connection.getConnection().setAutoCommit(true);
+            for (OrderItem item : orderItems) {
+                ReentrantLock productLock = productLocks.forKey(item.getProductId());
+                productLock.lock();
+                try {
+                    reindexProduct(connection, item.getProductId());
+                } finally {
+                    productLock.unlock();
+                }
+            }
+            return order;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Database error: " + e.getMessage(), e);
+        } finally {
+            if (connection != null) pool.release(connection);
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        pool.close();
+    }
+}
@@ -0,0 +1,157 @@
+package com.aurawell.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for the write-ahead log. In GROUP and ASYNC mode records are
+// queued and a background thread writes whatever has accumulated with one
+// write and one fsync, either when batchSize records are waiting or
+// intervalMillis after the first one arrived.
+public class LogFlusher {
+    public enum Mode {
+        SYNC,   // write and fsync on the calling thread
+        GROUP,  // batched fsync, caller waits until its record is durable
+        ASYNC;  // batched fsync, caller does not wait
+
+        public static Mode parse(String value) {
+            if (value == null || value.isEmpty()) return GROUP;
+            return Mode.valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private static class Pending {
+        final String record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(String record) { this.record = record; }
+    }
+
+    private final WriteAheadLog wal;
+    private final Mode mode;
+    private final long intervalMillis;
+    private final int batchSize;
+    private final Runnable onFailure;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    // Guards running against the enqueue in submit, so close() can never slip
+    // between the check and the add and strand a record nobody will flush
+    private final Object lifecycle = new Object();
+    private volatile boolean running = true;
+
+    // onFailure runs on the flusher thread when a batch could not be written,
+    // so the owner can persist the affected state some other way; not once
+    // close() has been called
+    public LogFlusher(WriteAheadLog wal, Mode mode, long intervalMillis, int batchSize, Runnable onFailure) {
+        this.wal = wal;
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+        this.batchSize = batchSize;
+        this.onFailure = onFailure;
+        if (mode == Mode.SYNC) {
+            thread = null;
+        } else {
+            thread = new Thread(this::run, "wal-flusher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public Mode getMode() { return mode; }
+
+    // Completes once the record is as durable as the mode promises
+    public CompletableFuture<Void> submit(String record) {
+        if (mode == Mode.SYNC) {
+            try {
+                synchronized (wal) {
+                    wal.append(record);
+                    wal.force();
+                }
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Pending pending = new Pending(record);
+        synchronized (lifecycle) {
+            if (!running) {
+                return CompletableFuture.failedFuture(new IOException("Log flusher is shut down"));
+            }
+            queue.add(pending);
+        }
+        return mode == Mode.ASYNC ? CompletableFuture.completedFuture(null) : pending.done;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(intervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        try {
+            List<String> records = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                records.add(pending.record);
+            }
+            synchronized (wal) {
+                wal.appendAll(records);
+                wal.force();
+            }
+            batch.forEach(pending -> pending.done.complete(null));
+        } catch (IOException e) {
+            e.printStackTrace();
+            batch.forEach(pending -> pending.done.completeExceptionally(e));
+            // While closing, the owner holds its own locks and persists
+            // everything itself once close() returns
+            if (mode == Mode.ASYNC && running) {
+                onFailure.run();
+            }
+        }
+    }
+
+    // Stops accepting records and blocks until everything queued is written.
+    // The thread is not interrupted: that would close the log's FileChannel.
+    // Anything still queued afterwards (the thread died, or the join was
+    // interrupted) is failed so no caller waits on it forever.
+    public void close() {
+        synchronized (lifecycle) {
+            running = false;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            IOException closed = new IOException("Log flusher is shut down");
+            left.forEach(pending -> pending.done.completeExceptionally(closed));
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.aurawell.services;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Process-wide counters, gauges and latency histograms, written out in the
+// Prometheus text format (see AdminMetricsServlet). Instruments are looked up
+// once and kept in a field; recording is then a few atomic adds, no locks and
+// no allocation.
+//
+// Labels are given as name/value pairs: counter("x_total", "help", "route", "/api/cart").
+public final class Metrics {
+    private static final Metrics instance = new Metrics();
+
+    public static Metrics get() {
+        return instance;
+    }
+
+    private static final class Family {
+        final String type;
+        final String help;
+        final Map<String, Sample> children = new ConcurrentHashMap<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private interface Sample {
+        void write(StringBuilder out, String name, String labels);
+    }
+
+    public static final class Counter implements Sample {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        @Override
+        public void write(StringBuilder out, String name, String labels) {
+            line(out, name, labels, Long.toString(value.sum()));
+        }
+    }
+
+    private record Supplied(LongSupplier supplier) implements Sample {
+        @Override
+        public void write(StringBuilder out, String name, String labels) {
+            line(out, name, labels, Long.toString(supplier.getAsLong()));
+        }
+    }
+
+    // Latency histogram with two views of the same observations. Fine buckets
+    // are log-linear like HdrHistogram: every power of two is split into 16,
+    // so quantiles are within about 6% of the true value from 1us to hours.
+    // Coarse buckets are the fixed Prometheus "le" bounds, so the scrape
+    // output stays small and can be aggregated across servers.
+    public static final class Histogram implements Sample {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int LINEAR_LIMIT = SUB_BUCKETS * 2; // below this every microsecond has a bucket
+        private static final int MAX_EXPONENT = 42;              // about 50 days
+        private static final int FINE_BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+        private static final double[] BOUNDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+        private static final long[] BOUND_MICROS = new long[BOUNDS.length];
+        private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+        static {
+            for (int i = 0; i < BOUNDS.length; i++) {
+                BOUND_MICROS[i] = Math.round(BOUNDS[i] * 1_000_000);
+            }
+        }
+
+        private final AtomicLongArray fine = new AtomicLongArray(FINE_BUCKETS);
+        private final AtomicLongArray coarse = new AtomicLongArray(BOUNDS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumMicros = new LongAdder();
+
+        public void recordNanos(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            fine.incrementAndGet(fineIndex(micros));
+            int bound = 0;
+            while (bound < BOUND_MICROS.length && micros > BOUND_MICROS[bound]) bound++;
+            coarse.incrementAndGet(bound);
+            count.increment();
+            sumMicros.add(micros);
+        }
+
+        // Records the time since a System.nanoTime() taken earlier
+        public void recordSince(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        // Upper edge of the bucket holding the q-th observation, in seconds
+        public double quantile(double q) {
+            long total = 0;
+            long[] counts = new long[FINE_BUCKETS];
+            for (int i = 0; i < FINE_BUCKETS; i++) {
+                counts[i] = fine.get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < FINE_BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperMicros(i) / 1e6;
+            }
+            return upperMicros(FINE_BUCKETS - 1) / 1e6;
+        }
+
+        static int fineIndex(long micros) {
+            if (micros < LINEAR_LIMIT) return (int) micros;
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            if (exponent >= MAX_EXPONENT) return FINE_BUCKETS - 1;
+            int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+        }
+
+        static long upperMicros(int index) {
+            if (index < LINEAR_LIMIT) return index + 1;
+            int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+            int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+            return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS));
+        }
+
+        @Override
+        public void write(StringBuilder out, String name, String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += coarse.get(i);
+                line(out, name + "_bucket", withLabel(labels, "le", Double.toString(BOUNDS[i])), Long.toString(cumulative));
+            }
+            cumulative += coarse.get(BOUNDS.length);
+            line(out, name + "_bucket", withLabel(labels, "le", "+Inf"), Long.toString(cumulative));
+            line(out, name + "_sum", labels, Double.toString(sumMicros.sum() / 1e6));
+            line(out, name + "_count", labels, Long.toString(cumulative));
+        }
+
+        void writeQuantiles(StringBuilder out, String name, String labels) {
+            for (double q : QUANTILES) {
+                line(out, name, withLabel(labels, "quantile", Double.toString(q)), Double.toString(quantile(q)));
+            }
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) register(name, "counter", help, labels, Counter::new);
+    }
+
+    // A counter whose value is kept elsewhere, read at scrape time
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        replace(name, "counter", help, labels, new Supplied(value));
+    }
+
+    // A gauge read at scrape time; registering the same labels again replaces it
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        replace(name, "gauge", help, labels, new Supplied(value));
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) register(name, "histogram", help, labels, Histogram::new);
+    }
+
+    private Sample register(String name, String type, String help, String[] labels,
+                            Supplier<Sample> factory) {
+        return family(name, type, help).children.computeIfAbsent(labelString(labels), key -> factory.get());
+    }
+
+    private void replace(String name, String type, String help, String[] labels, Sample sample) {
+        family(name, type, help).children.put(labelString(labels), sample);
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    // Families sorted by name, children by label set. Histograms are followed
+    // by a <name>_quantiles gauge with the p50/p90/p99/p999 of their fine buckets.
+    public void writePrometheus(Writer writer) throws IOException {
+        StringBuilder out = new StringBuilder(8192);
+        for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            Map<String, Sample> children = new TreeMap<>(family.children);
+            if (children.isEmpty()) continue;
+            header(out, name, family.type, family.help);
+            for (Map.Entry<String, Sample> child : children.entrySet()) {
+                child.getValue().write(out, name, child.getKey());
+            }
+            if (family.type.equals("histogram")) {
+                header(out, name + "_quantiles", "gauge", family.help + " (quantiles)");
+                for (Map.Entry<String, Sample> child : children.entrySet()) {
+                    ((Histogram) child.getValue()).writeQuantiles(out, name + "_quantiles", child.getKey());
+                }
+            }
+        }
+        writer.write(out.toString());
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void line(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String label = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? label : labels + "," + label;
+    }
+
+    // route="/api/cart",method="GET"
+    static String labelString(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        List<String> parts = new ArrayList<>(labels.length / 2);
+        for (int i = 0; i < labels.length; i += 2) {
+            String value = labels[i + 1] == null ? "" : labels[i + 1];
+            parts.add(labels[i] + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"");
+        }
+        return String.join(",", parts);
+    }
+}
@@ -0,0 +1,61 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Order;
+
+import java.util.Comparator;
+
+// Filters, sort direction and keyset cursor for Repository.findOrders. Orders
+// are always sorted by (createdAt, id); the cursor is the last order of the
+// previous page, so paging stays stable while new orders arrive.
+public class OrderQuery {
+    public static final int MAX_LIMIT = 500;
+
+    private String status;
+    private String userId;
+    private Long from;  // createdAt >= from
+    private Long to;    // createdAt < to
+    private boolean newestFirst = true;
+    private Order cursor;
+    private int limit = 50;
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public Long getFrom() { return from; }
+    public void setFrom(Long from) { this.from = from; }
+
+    public Long getTo() { return to; }
+    public void setTo(Long to) { this.to = to; }
+
+    public boolean isNewestFirst() { return newestFirst; }
+    public void setNewestFirst(boolean newestFirst) { this.newestFirst = newestFirst; }
+
+    public Long getAfterCreatedAt() { return cursor == null ? null : cursor.getCreatedAt(); }
+    public String getAfterId() { return cursor == null ? null : cursor.getId(); }
+
+    // Continue after this order, in the query's sort direction
+    public void setCursor(long createdAt, String id) {
+        cursor = new Order();
+        cursor.setCreatedAt(createdAt);
+        cursor.setId(id);
+    }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+
+    public boolean matches(Order order) {
+        if (status != null && !status.equals(order.getStatus())) return false;
+        if (userId != null && !userId.equals(order.getUserId())) return false;
+        if (from != null && order.getCreatedAt() < from) return false;
+        if (to != null && order.getCreatedAt() >= to) return false;
+        return cursor == null || comparator().compare(order, cursor) > 0;
+    }
+
+    public Comparator<Order> comparator() {
+        Comparator<Order> ascending = Comparator.comparingLong(Order::getCreatedAt).thenComparing(Order::getId);
+        return newestFirst ? ascending.reversed() : ascending;
+    }
+}
@@ -0,0 +1,372 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Order;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+// Order history split into one snapshot per calendar month (UTC), e.g.
+// orders/2024-03.json. Only the most recent months are kept in memory; older
+// segments are read on demand and kept in a small LRU cache. What stays
+// resident for every order is its index entry: segment + position, and the
+// order id in its user's list.
+//
+// Orders are only ever appended to a segment or replaced in place, so
+// positions are stable. A segment with unsaved changes is pinned in memory
+// until the next compaction writes it out.
+//
+// Segment lists and the per-user id lists are plain ArrayLists guarded by
+// this store's lock: an insert is an append, not a copy of the whole month.
+// Readers touch them only under the lock, copying out what they return.
+// Reading a cold month from disk happens outside the lock (one load per
+// month at a time), so paging through old history never holds up checkouts;
+// the lock is only taken to install the loaded segment.
+class OrderStore {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{4}-\\d{2}");
+
+    // How segment snapshots are read and written; DataManager supplies its own
+    // JSON/binary handling so segments follow SNAPSHOT_FORMAT like every other file
+    interface SegmentFiles {
+        List<Order> read(Path file); // null if the segment has no snapshot
+        void write(Path file, List<Order> orders) throws IOException;
+    }
+
+    private record OrderRef(String segment, int position) {}
+
+    // orders and dirty are guarded by the store
+    private static class Segment {
+        final List<Order> orders;
+        boolean dirty;
+
+        Segment(List<Order> orders) {
+            this.orders = new ArrayList<>(orders);
+        }
+    }
+
+    private final Path directory;
+    private final SegmentFiles files;
+    private final int hotMonths;
+    private final int cachedSegments;
+
+    private final Map<String, OrderRef> refsById = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> orderIdsByUser = new HashMap<>(); // guarded by this
+    private final NavigableMap<String, Integer> segmentSizes = new ConcurrentSkipListMap<>();
+
+    // Resident segments in access order; guarded by this
+    private final LinkedHashMap<String, Segment> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    // Bumped on every put into a month, so a load that raced a write, flush
+    // and eviction of the same month knows its file contents are stale; guarded by this
+    private final Map<String, Long> writesBySegment = new HashMap<>();
+    private final Map<String, CompletableFuture<Segment>> loading = new ConcurrentHashMap<>();
+
+    OrderStore(Path directory, SegmentFiles files, int hotMonths, int cachedSegments) {
+        this.directory = directory;
+        this.files = files;
+        this.hotMonths = Math.max(1, hotMonths);
+        this.cachedSegments = Math.max(0, cachedSegments);
+    }
+
+    // Builds the index by reading every segment once; only hot ones are kept
+    synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        SortedSet<String> keys = new TreeSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                if (dot > 0 && (name.endsWith(".json") || name.endsWith(".bin"))
+                        && SEGMENT_NAME.matcher(name.substring(0, dot)).matches()) {
+                    keys.add(name.substring(0, dot));
+                }
+            }
+        }
+        for (String key : keys) {
+            List<Order> orders = files.read(fileOf(key));
+            if (orders == null) continue;
+            for (int i = 0; i < orders.size(); i++) {
+                index(orders.get(i), key, i);
+            }
+            segmentSizes.put(key, orders.size());
+            if (isHot(key)) {
+                loaded.put(key, new Segment(orders));
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return refsById.isEmpty();
+    }
+
+    int size() {
+        return refsById.size();
+    }
+
+    // null also when the order's month could not be read back (see load)
+    Order get(String id) {
+        OrderRef ref = refsById.get(id);
+        if (ref == null) return null;
+        Segment segment = segment(ref.segment());
+        synchronized (this) {
+            return ref.position() < segment.orders.size() ? segment.orders.get(ref.position()) : null;
+        }
+    }
+
+    // Inserts a new order or replaces the stored copy of an existing one
+    void put(Order order) {
+        // Bring a cold month in before taking the lock; if it is evicted again
+        // in between, locked() reads it under the lock, which is rare
+        OrderRef existing = refsById.get(order.getId());
+        String month = existing != null ? existing.segment() : segmentOf(order);
+        if (segmentSizes.containsKey(month)) segment(month);
+
+        synchronized (this) {
+            OrderRef ref = refsById.get(order.getId());
+            String key = ref != null ? ref.segment() : segmentOf(order);
+            writesBySegment.merge(key, 1L, Long::sum);
+            Segment segment = loaded.get(key);
+            if (segment == null) {
+                segment = segmentSizes.containsKey(key) ? locked(key) : new Segment(List.of());
+                loaded.put(key, segment);
+            }
+            if (ref != null) {
+                if (ref.position() < segment.orders.size()) {
+                    segment.orders.set(ref.position(), order);
+                    segment.dirty = true;
+                }
+                return;
+            }
+            segment.orders.add(order);
+            segment.dirty = true;
+            segmentSizes.put(key, segment.orders.size());
+            index(order, key, segment.orders.size() - 1);
+        }
+    }
+
+    List<Order> getByUserId(String userId) {
+        List<String> ids;
+        synchronized (this) {
+            ids = orderIdsByUser.get(userId);
+            if (ids == null) return List.of();
+            ids = new ArrayList<>(ids);
+        }
+        List<Order> orders = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Order order = get(id);
+            if (order != null) orders.add(order);
+        }
+        return orders;
+    }
+
+    // Newest first. Whole segments before the requested range are skipped by
+    // their size alone, so deep pages only load the months they cover.
+    List<Order> getPage(int offset, int limit) {
+        List<Order> page = new ArrayList<>();
+        int skip = Math.max(0, offset);
+        for (Map.Entry<String, Integer> entry : segmentSizes.descendingMap().entrySet()) {
+            if (page.size() >= limit) break;
+            if (skip >= entry.getValue()) {
+                skip -= entry.getValue();
+                continue;
+            }
+            List<Order> orders = snapshot(entry.getKey());
+            orders.sort(Comparator.comparingLong(Order::getCreatedAt).reversed());
+            int from = Math.min(skip, orders.size());
+            page.addAll(orders.subList(from, Math.min(orders.size(), from + limit - page.size())));
+            skip = 0;
+        }
+        return page;
+    }
+
+    // One page of matching orders. A userId filter goes through the user index;
+    // otherwise segments are visited in sort order, and months entirely outside
+    // the date range or before the cursor are skipped without being loaded.
+    List<Order> find(OrderQuery query) {
+        if (query.getUserId() != null) {
+            List<Order> orders = new ArrayList<>();
+            for (Order order : getByUserId(query.getUserId())) {
+                if (query.matches(order)) orders.add(order);
+            }
+            orders.sort(query.comparator());
+            return orders.subList(0, Math.min(orders.size(), query.getLimit()));
+        }
+
+        Long lowest = query.getFrom();
+        Long highest = query.getTo() == null ? null : query.getTo() - 1;
+        Long cursor = query.getAfterCreatedAt();
+        if (cursor != null) {
+            if (query.isNewestFirst()) highest = highest == null ? cursor : Math.min(highest, cursor);
+            else lowest = lowest == null ? cursor : Math.max(lowest, cursor);
+        }
+
+        List<Order> page = new ArrayList<>();
+        Set<String> keys = query.isNewestFirst() ? segmentSizes.descendingKeySet() : segmentSizes.keySet();
+        for (String key : keys) {
+            if (page.size() >= query.getLimit()) break;
+            YearMonth month = YearMonth.parse(key);
+            long start = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            long end = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            if ((highest != null && start > highest) || (lowest != null && end <= lowest)) continue;
+
+            List<Order> matching = matching(key, query);
+            matching.sort(query.comparator());
+            page.addAll(matching.subList(0, Math.min(matching.size(), query.getLimit() - page.size())));
+        }
+        return page;
+    }
+
+    // Oldest first; visits one segment at a time
+    List<Order> getAll() {
+        List<Order> all = new ArrayList<>(size());
+        for (String key : segmentSizes.keySet()) {
+            List<Order> orders = snapshot(key);
+            orders.sort(Comparator.comparingLong(Order::getCreatedAt));
+            all.addAll(orders);
+        }
+        return all;
+    }
+
+    // Writes every segment changed since the last call. Called from compaction,
+    // with all writers excluded.
+    synchronized void flush() throws IOException {
+        for (Map.Entry<String, Segment> entry : loaded.entrySet()) {
+            Segment segment = entry.getValue();
+            if (segment.dirty) {
+                files.write(fileOf(entry.getKey()), new ArrayList<>(segment.orders));
+                segment.dirty = false;
+            }
+        }
+        evict();
+    }
+
+    // Marks every resident segment as changed so the next flush rewrites it,
+    // e.g. after importing the single-file snapshot
+    synchronized void markAllDirty() {
+        loaded.values().forEach(segment -> segment.dirty = true);
+    }
+
+    // A copy of the segment's orders that later writes do not touch
+    private List<Order> snapshot(String key) {
+        Segment segment = segment(key);
+        synchronized (this) {
+            return new ArrayList<>(segment.orders);
+        }
+    }
+
+    private List<Order> matching(String key, OrderQuery query) {
+        Segment segment = segment(key);
+        List<Order> matching = new ArrayList<>();
+        synchronized (this) {
+            for (Order order : segment.orders) {
+                if (query.matches(order)) matching.add(order);
+            }
+        }
+        return matching;
+    }
+
+    // The resident segment, read from disk without holding the lock if it is
+    // not; concurrent callers for the same month share one read. Must not be
+    // called with the lock held (that would wait on a loader needing it).
+    private Segment segment(String key) {
+        long writes;
+        synchronized (this) {
+            Segment segment = loaded.get(key);
+            if (segment != null) return segment;
+            writes = writesBySegment.getOrDefault(key, 0L);
+        }
+        CompletableFuture<Segment> mine = new CompletableFuture<>();
+        CompletableFuture<Segment> pending = loading.putIfAbsent(key, mine);
+        if (pending != null) return pending.join();
+        try {
+            while (true) {
+                List<Order> orders = load(key);
+                synchronized (this) {
+                    Segment segment = loaded.get(key);
+                    long now = writesBySegment.getOrDefault(key, 0L);
+                    if (segment == null && now == writes) {
+                        segment = new Segment(orders);
+                        loaded.put(key, segment);
+                        evict();
+                    }
+                    if (segment != null) {
+                        mine.complete(segment);
+                        return segment;
+                    }
+                    writes = now; // written, flushed and evicted while we read; read again
+                }
+            }
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    // segment() for callers already holding the lock
+    private Segment locked(String key) {
+        Segment segment = loaded.get(key);
+        if (segment == null) {
+            segment = new Segment(load(key));
+            loaded.put(key, segment);
+            evict();
+        }
+        return segment;
+    }
+
+    // A month whose snapshot has gone missing still has index entries; its
+    // orders read as absent (get() returns null) instead of failing
+    private List<Order> load(String key) {
+        List<Order> orders = files.read(fileOf(key));
+        if (orders == null) {
+            System.err.println("Order segment " + key + " has no snapshot; its "
+                + segmentSizes.getOrDefault(key, 0) + " indexed orders are unavailable");
+            return List.of();
+        }
+        return orders;
+    }
+
+    // Drops the least recently used cold segments beyond the cache size.
+    // Hot and dirty segments do not count and are never dropped.
+    private void evict() {
+        int cold = 0;
+        for (Map.Entry<String, Segment> entry : loaded.entrySet()) {
+            if (!isHot(entry.getKey()) && !entry.getValue().dirty) cold++;
+        }
+        Iterator<Map.Entry<String, Segment>> it = loaded.entrySet().iterator();
+        while (cold > cachedSegments && it.hasNext()) {
+            Map.Entry<String, Segment> entry = it.next();
+            if (!isHot(entry.getKey()) && !entry.getValue().dirty) {
+                it.remove();
+                cold--;
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void index(Order order, String key, int position) {
+        refsById.put(order.getId(), new OrderRef(key, position));
+        orderIdsByUser.computeIfAbsent(order.getUserId(), k -> new ArrayList<>()).add(order.getId());
+    }
+
+    private boolean isHot(String key) {
+        return key.compareTo(YearMonth.now(ZoneOffset.UTC).minusMonths(hotMonths - 1).toString()) >= 0;
+    }
+
+    private static String segmentOf(Order order) {
+        return YearMonth.from(Instant.ofEpochMilli(order.getCreatedAt()).atZone(ZoneOffset.UTC)).toString().intern();
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + ".json");
+    }
+}
@@ -0,0 +1,198 @@
+package com.aurawell.services;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Password hashing for stored credentials: PBKDF2-HMAC-SHA256 with a random
+// 16-byte salt, stored as "pbkdf2-sha256$<iterations>$<salt>$<hash>" (base64).
+// The iteration count is calibrated once at startup so one hash takes about
+// PASSWORD_HASH_TARGET_MS (default 100) on this machine, but never fewer than
+// MIN_ITERATIONS; PASSWORD_HASH_ITERATIONS pins it instead. Every record
+// carries its own count, so a recalibration never invalidates old hashes.
+//
+// Hashing runs on its own pool (PASSWORD_HASH_THREADS, default one per core)
+// behind a bounded queue (PASSWORD_HASH_QUEUE, default 32), not on request
+// threads. In a login storm the queue fills and further requests fail fast
+// with BusyException instead of every Tomcat thread burning CPU on hashes.
+//
+// Records without the prefix are legacy plaintext passwords. They still
+// verify, and needsUpgrade() tells the repository to replace them after the
+// next successful login, along with hashes well below the current cost.
+// Calibration varies a little between restarts, so a hash only counts as
+// weaker under UPGRADE_RATIO of the current count; otherwise every restart
+// on a slightly faster moment would rehash every user again.
+public final class PasswordService {
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int MIN_ITERATIONS = 50_000;
+    private static final int ITERATION_STEP = 10_000; // calibrated counts are rounded to this
+    private static final double UPGRADE_RATIO = 0.8;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final Metrics.Histogram HASH_TIME = Metrics.get().histogram(
+        "aurawell_password_hash_duration_seconds", "Time to hash or verify one password, excluding time queued");
+    private static final Metrics.Counter REJECTED = Metrics.get().counter(
+        "aurawell_password_hash_rejected_total", "Password hashes turned away because the queue was full");
+
+    private static PasswordService instance;
+
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    private final String dummyHash; // verified against for unknown emails
+
+    // Thrown when the hashing queue is full; the caller should answer 503
+    public static class BusyException extends RuntimeException {
+        public BusyException() {
+            super("Too many logins in progress, try again shortly");
+        }
+    }
+
+    public static synchronized PasswordService get() {
+        if (instance == null) {
+            String fixed = System.getenv("PASSWORD_HASH_ITERATIONS");
+            String target = System.getenv("PASSWORD_HASH_TARGET_MS");
+            String threads = System.getenv("PASSWORD_HASH_THREADS");
+            String queue = System.getenv("PASSWORD_HASH_QUEUE");
+            int iterations = fixed != null && !fixed.isEmpty() ? Integer.parseInt(fixed)
+                : calibrate(target != null && !target.isEmpty() ? Long.parseLong(target) : 100);
+            instance = new PasswordService(iterations,
+                threads != null && !threads.isEmpty() ? Integer.parseInt(threads) : Runtime.getRuntime().availableProcessors(),
+                queue != null && !queue.isEmpty() ? Integer.parseInt(queue) : 32);
+            System.out.println("Password hashing: PBKDF2-SHA256, " + iterations + " iterations");
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.executor.shutdownNow();
+            instance = null;
+        }
+    }
+
+    PasswordService(int iterations, int threads, int queueDepth) {
+        this.iterations = iterations;
+        AtomicInteger ids = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueDepth), task -> {
+                Thread thread = new Thread(task, "password-hash-" + ids.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = encode(iterations, salt(), "dummy".toCharArray());
+        Metrics.get().gauge("aurawell_password_hash_queue_depth", "Password hashes waiting for a thread",
+            () -> executor.getQueue().size());
+    }
+
+    // A new record for the password, at the current cost
+    public String hash(String password) {
+        byte[] salt = salt();
+        return submit(() -> encode(iterations, salt, password.toCharArray()));
+    }
+
+    // False for a null record (unknown user). Unknown users and legacy
+    // plaintext records pay for a hash of dummyHash on the pool, so every
+    // answer takes the same work and goes through the same queue.
+    public boolean verify(String password, String stored) {
+        if (stored == null) {
+            submit(() -> matches(password, dummyHash));
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            return submit(() -> {
+                matches(password, dummyHash);
+                return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+            });
+        }
+        return submit(() -> matches(password, stored));
+    }
+
+    public boolean needsUpgrade(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) return true;
+        int storedIterations = Integer.parseInt(stored.substring(PREFIX.length(), stored.indexOf('$', PREFIX.length())));
+        return storedIterations < iterations * UPGRADE_RATIO;
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    HASH_TIME.recordSince(start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            REJECTED.increment();
+            throw new BusyException();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusyException();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static boolean matches(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(parts[3]);
+        return MessageDigest.isEqual(expected, derive(Integer.parseInt(parts[1]), decoder.decode(parts[2]), password.toCharArray()));
+    }
+
+    private static String encode(int iterations, byte[] salt, char[] password) {
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$"
+            + encoder.encodeToString(derive(iterations, salt, password));
+    }
+
+    private static byte[] derive(int iterations, byte[] salt, char[] password) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private byte[] salt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    // Iterations for one hash to take targetMillis: time a fixed count once
+    // the JIT has warmed up and scale it, keeping the best of a few runs
+    private static int calibrate(long targetMillis) {
+        int probe = 20_000;
+        byte[] salt = new byte[SALT_BYTES];
+        char[] password = "calibration".toCharArray();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            long start = System.nanoTime();
+            derive(probe, salt, password);
+            if (i >= 3) best = Math.min(best, System.nanoTime() - start);
+        }
+        long scaled = probe * TimeUnit.MILLISECONDS.toNanos(targetMillis) / Math.max(1, best);
+        long rounded = Math.round((double) scaled / ITERATION_STEP) * ITERATION_STEP;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(rounded, 10_000_000));
+    }
+}
@@ -0,0 +1,249 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Product;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Bitset indexes over the catalog for faceted browsing. Each product gets a
+// dense document number (in catalog order); every category, age group and the
+// in-stock flag keep a BitSet of the documents they apply to, so a combined
+// filter is a handful of word-wise ANDs/ORs. Sorted orders by price, creation
+// time and name are kept as document permutations, rebuilt lazily only after
+// a change that affects them; a page is then a walk along the permutation.
+public class ProductFacetIndex {
+    public static final String CATEGORY = "category";
+    public static final String AGE_GROUP = "ageGroup";
+    public static final String IN_STOCK = "inStock";
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> docsByProductId = new HashMap<>();
+    private final List<Product> productsByDoc = new ArrayList<>();
+    private final BitSet live = new BitSet();
+    private final BitSet inStock = new BitSet();
+    private final Map<String, BitSet> byCategory = new TreeMap<>(); // lower-cased value
+    private final Map<String, BitSet> byAgeGroup = new TreeMap<>();
+    // First-seen spelling of each lower-cased value, reported in the facet counts
+    private final Map<String, String> categoryLabels = new HashMap<>();
+    private final Map<String, String> ageGroupLabels = new HashMap<>();
+    private final Map<ProductQuery.Sort, int[]> sortOrders = new EnumMap<>(ProductQuery.Sort.class); // guarded by itself
+
+    public void put(Product product) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsByProductId.get(product.getId());
+            Product previous = null;
+            if (doc == null) {
+                doc = productsByDoc.size();
+                docsByProductId.put(product.getId(), doc);
+                productsByDoc.add(product);
+                live.set(doc);
+                invalidate(ProductQuery.Sort.values());
+            } else {
+                previous = productsByDoc.set(doc, product);
+                clear(byCategory, categoryLabels, previous.getCategory(), doc);
+                clear(byAgeGroup, ageGroupLabels, previous.getAgeGroup(), doc);
+                if (previous.getPrice() != product.getPrice()) invalidate(ProductQuery.Sort.PRICE);
+                if (!Objects.equals(previous.getName(), product.getName())) invalidate(ProductQuery.Sort.NAME);
+            }
+            set(byCategory, categoryLabels, product.getCategory(), doc);
+            set(byAgeGroup, ageGroupLabels, product.getAgeGroup(), doc);
+            inStock.set(doc, product.getStock() > 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsByProductId.remove(productId);
+            if (doc == null) return;
+            Product removed = productsByDoc.set(doc, null);
+            clear(byCategory, categoryLabels, removed.getCategory(), doc);
+            clear(byAgeGroup, ageGroupLabels, removed.getAgeGroup(), doc);
+            live.clear(doc);
+            inStock.clear(doc);
+            invalidate(ProductQuery.Sort.values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ProductPage query(ProductQuery query) {
+        lock.readLock().lock();
+        try {
+            BitSet categoryFilter = union(byCategory, query.getCategories());
+            BitSet ageGroupFilter = union(byAgeGroup, query.getAgeGroups());
+            BitSet priceFilter = priceFilter(query.getMinPrice(), query.getMaxPrice());
+            BitSet stockFilter = null;
+            if (query.getInStock() != null) {
+                stockFilter = (BitSet) live.clone();
+                if (query.getInStock()) stockFilter.and(inStock);
+                else stockFilter.andNot(inStock);
+            }
+
+            BitSet matching = intersect(categoryFilter, ageGroupFilter, priceFilter, stockFilter);
+
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            facets.put(CATEGORY, counts(byCategory, categoryLabels, intersect(null, ageGroupFilter, priceFilter, stockFilter)));
+            facets.put(AGE_GROUP, counts(byAgeGroup, ageGroupLabels, intersect(categoryFilter, null, priceFilter, stockFilter)));
+            BitSet withoutStock = intersect(categoryFilter, ageGroupFilter, priceFilter, null);
+            int available = intersectionCount(withoutStock, inStock);
+            Map<String, Integer> stockCounts = new LinkedHashMap<>();
+            stockCounts.put("true", available);
+            stockCounts.put("false", withoutStock.cardinality() - available);
+            facets.put(IN_STOCK, stockCounts);
+
+            Double minPrice = null;
+            Double maxPrice = null;
+            for (int doc = matching.nextSetBit(0); doc >= 0; doc = matching.nextSetBit(doc + 1)) {
+                double price = productsByDoc.get(doc).getPrice();
+                if (minPrice == null || price < minPrice) minPrice = price;
+                if (maxPrice == null || price > maxPrice) maxPrice = price;
+            }
+
+            int offset = Math.max(0, query.getOffset());
+            int limit = Math.max(0, query.getLimit());
+            return new ProductPage(page(matching, query, offset, limit), matching.cardinality(),
+                offset, limit, facets, minPrice, maxPrice);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Product> page(BitSet matching, ProductQuery query, int offset, int limit) {
+        List<Product> products = new ArrayList<>(Math.min(limit, 64));
+        int skipped = 0;
+        if (query.getSort() == ProductQuery.Sort.CATALOG) {
+            int doc = query.isDescending() ? matching.previousSetBit(matching.length() - 1) : matching.nextSetBit(0);
+            while (doc >= 0 && products.size() < limit) {
+                if (skipped++ >= offset) products.add(productsByDoc.get(doc));
+                doc = query.isDescending() ? matching.previousSetBit(doc - 1) : matching.nextSetBit(doc + 1);
+            }
+            return products;
+        }
+        int[] order = sortOrder(query.getSort());
+        for (int i = 0; i < order.length && products.size() < limit; i++) {
+            int doc = order[query.isDescending() ? order.length - 1 - i : i];
+            if (matching.get(doc) && skipped++ >= offset) {
+                products.add(productsByDoc.get(doc));
+            }
+        }
+        return products;
+    }
+
+    // Callers hold the read lock, so the documents cannot change underneath
+    private int[] sortOrder(ProductQuery.Sort sort) {
+        synchronized (sortOrders) {
+            int[] order = sortOrders.get(sort);
+            if (order == null) {
+                Comparator<Product> comparator = switch (sort) {
+                    case PRICE -> Comparator.comparingDouble(Product::getPrice);
+                    case CREATED_AT -> Comparator.comparingLong(Product::getCreatedAt);
+                    default -> Comparator.comparing(Product::getName,
+                        Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+                };
+                order = live.stream().boxed()
+                    .sorted((a, b) -> {
+                        int result = comparator.compare(productsByDoc.get(a), productsByDoc.get(b));
+                        return result != 0 ? result : Integer.compare(a, b);
+                    })
+                    .mapToInt(Integer::intValue).toArray();
+                sortOrders.put(sort, order);
+            }
+            return order;
+        }
+    }
+
+    private void invalidate(ProductQuery.Sort... sorts) {
+        synchronized (sortOrders) {
+            for (ProductQuery.Sort sort : sorts) sortOrders.remove(sort);
+        }
+    }
+
+    // Binary search over the price order, so only documents inside the range are touched
+    private BitSet priceFilter(Double min, Double max) {
+        if (min == null && max == null) return null;
+        int[] order = sortOrder(ProductQuery.Sort.PRICE);
+        int from = min == null ? 0 : firstPriceAtLeast(order, min, false);
+        int to = max == null ? order.length : firstPriceAtLeast(order, max, true);
+        BitSet result = new BitSet(productsByDoc.size());
+        for (int i = from; i < to; i++) {
+            result.set(order[i]);
+        }
+        result.and(live);
+        return result;
+    }
+
+    // Position of the first document priced >= bound (> bound when exclusive)
+    private int firstPriceAtLeast(int[] order, double bound, boolean exclusive) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            double price = productsByDoc.get(order[mid]).getPrice();
+            if (price < bound || (exclusive && price == bound)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Null filters are "no constraint"
+    private BitSet intersect(BitSet... filters) {
+        BitSet result = (BitSet) live.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) result.and(filter);
+        }
+        return result;
+    }
+
+    private static BitSet union(Map<String, BitSet> index, Set<String> values) {
+        if (values == null || values.isEmpty()) return null;
+        BitSet result = new BitSet();
+        for (String value : values) {
+            BitSet docs = index.get(key(value));
+            if (docs != null) result.or(docs);
+        }
+        return result;
+    }
+
+    private static Map<String, Integer> counts(Map<String, BitSet> index, Map<String, String> labels, BitSet base) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, BitSet> entry : index.entrySet()) {
+            int count = intersectionCount(base, entry.getValue());
+            if (count > 0) counts.put(labels.get(entry.getKey()), count);
+        }
+        return counts;
+    }
+
+    private static int intersectionCount(BitSet a, BitSet b) {
+        BitSet both = (BitSet) a.clone();
+        both.and(b);
+        return both.cardinality();
+    }
+
+    private static void set(Map<String, BitSet> index, Map<String, String> labels, String value, int doc) {
+        String key = key(value);
+        if (key == null) return;
+        index.computeIfAbsent(key, k -> new BitSet()).set(doc);
+        labels.putIfAbsent(key, value);
+    }
+
+    private static void clear(Map<String, BitSet> index, Map<String, String> labels, String value, int doc) {
+        String key = key(value);
+        if (key == null) return;
+        BitSet docs = index.get(key);
+        if (docs == null) return;
+        docs.clear(doc);
+        if (docs.isEmpty()) {
+            index.remove(key);
+            labels.remove(key);
+        }
+    }
+
+    private static String key(String value) {
+        return value == null || value.isEmpty() ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
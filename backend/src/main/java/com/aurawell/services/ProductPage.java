@@ -0,0 +1,38 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Product;
+
+import java.util.List;
+import java.util.Map;
+
+// One page of Repository.findProducts. Facet counts are computed with every
+// filter except the facet's own, so each count says how many results picking
+// that value (in addition to the ones already picked) would give.
+public class ProductPage {
+    private final List<Product> products;
+    private final int total;
+    private final int offset;
+    private final int limit;
+    private final Map<String, Map<String, Integer>> facets; // facet -> value -> count
+    private final Double minPrice; // price range of the matching products
+    private final Double maxPrice;
+
+    public ProductPage(List<Product> products, int total, int offset, int limit,
+                       Map<String, Map<String, Integer>> facets, Double minPrice, Double maxPrice) {
+        this.products = products;
+        this.total = total;
+        this.offset = offset;
+        this.limit = limit;
+        this.facets = facets;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public List<Product> getProducts() { return products; }
+    public int getTotal() { return total; }
+    public int getOffset() { return offset; }
+    public int getLimit() { return limit; }
+    public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    public Double getMinPrice() { return minPrice; }
+    public Double getMaxPrice() { return maxPrice; }
+}
@@ -0,0 +1,49 @@
+package com.aurawell.services;
+
+import java.util.Set;
+
+// Facet filters, sort and page for Repository.findProducts. Empty or null
+// filters match everything; category and age group values are case-insensitive
+// and several values of one facet are OR-ed.
+public class ProductQuery {
+    public static final int MAX_LIMIT = 200;
+
+    public enum Sort { CATALOG, PRICE, CREATED_AT, NAME }
+
+    private Set<String> categories = Set.of();
+    private Set<String> ageGroups = Set.of();
+    private Double minPrice;
+    private Double maxPrice;
+    private Boolean inStock;
+    private Sort sort = Sort.CATALOG;
+    private boolean descending;
+    private int offset;
+    private int limit = 24;
+
+    public Set<String> getCategories() { return categories; }
+    public void setCategories(Set<String> categories) { this.categories = categories; }
+
+    public Set<String> getAgeGroups() { return ageGroups; }
+    public void setAgeGroups(Set<String> ageGroups) { this.ageGroups = ageGroups; }
+
+    public Double getMinPrice() { return minPrice; }
+    public void setMinPrice(Double minPrice) { this.minPrice = minPrice; }
+
+    public Double getMaxPrice() { return maxPrice; }
+    public void setMaxPrice(Double maxPrice) { this.maxPrice = maxPrice; }
+
+    public Boolean getInStock() { return inStock; }
+    public void setInStock(Boolean inStock) { this.inStock = inStock; }
+
+    public Sort getSort() { return sort; }
+    public void setSort(Sort sort) { this.sort = sort; }
+
+    public boolean isDescending() { return descending; }
+    public void setDescending(boolean descending) { this.descending = descending; }
+
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+}
@@ -0,0 +1,279 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Product;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over product name, description, category and age
+// group. Each product gets a dense document number; every term maps to a
+// posting list of (document, weight) kept sorted by document, where weight is
+// the field-weighted term frequency. The term dictionary is sorted, so a
+// query token also matches terms it is a prefix of ("vita" finds "vitamin").
+//
+// A product matches when every query token matches one of its terms. Score
+// per token is weight * idf, with prefix matches counting less than exact
+// ones; results are ordered by total score.
+public class ProductSearchIndex {
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float AGE_GROUP_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float PREFIX_FACTOR = 0.6f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_QUERY_TOKENS = 8;
+
+    private static class Postings {
+        int[] docs = new int[4];
+        float[] weights = new float[4];
+        int size;
+
+        void add(int doc, float weight) {
+            int at = size > 0 && docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0 && at < size) {
+                weights[at] = weight; // already present
+                return;
+            }
+            if (at < 0) at = -at - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            System.arraycopy(weights, at, weights, at + 1, size - at);
+            docs[at] = doc;
+            weights[at] = weight;
+            size++;
+        }
+
+        void remove(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at < 0) return;
+            System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+            System.arraycopy(weights, at + 1, weights, at, size - at - 1);
+            size--;
+        }
+    }
+
+    // A product's indexed terms, kept to remove them again on update/delete
+    private record Entry(String[] terms, float[] weights) {}
+
+    // The dictionary terms a query token matches
+    private record Expansion(String token, List<Map.Entry<String, Postings>> matches, int postingCount) {}
+
+    // Per-thread scoring arrays, indexed by document and reset after each query
+    private static class Scratch {
+        float[] score = new float[0];
+        float[] best = new float[0];
+        int[] lastToken = new int[0];
+        int[] matched = new int[0];
+        int[] touched = new int[0];
+        int touchedCount;
+
+        void ensure(int documents) {
+            if (score.length < documents) {
+                int size = Math.max(documents, score.length * 2);
+                score = new float[size];
+                best = new float[size];
+                lastToken = new int[size];
+                matched = new int[size];
+                touched = new int[size];
+            }
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final TreeMap<String, Postings> terms = new TreeMap<>(); // same postings, sorted for prefix lookups
+    private final Map<String, Integer> docsByProductId = new HashMap<>();
+    private final List<String> productIdsByDoc = new ArrayList<>();
+    private final List<Entry> entriesByDoc = new ArrayList<>();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private int liveDocuments;
+
+    public void put(Product product) {
+        Map<String, Float> weighted = new HashMap<>();
+        addField(weighted, product.getName(), NAME_WEIGHT);
+        addField(weighted, product.getCategory(), CATEGORY_WEIGHT);
+        addField(weighted, product.getAgeGroup(), AGE_GROUP_WEIGHT);
+        addField(weighted, product.getDescription(), DESCRIPTION_WEIGHT);
+        String[] newTerms = weighted.keySet().toArray(new String[0]);
+        Arrays.sort(newTerms);
+        float[] newWeights = new float[newTerms.length];
+        for (int i = 0; i < newTerms.length; i++) {
+            newWeights[i] = weighted.get(newTerms[i]);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsByProductId.get(product.getId());
+            if (doc == null) {
+                doc = productIdsByDoc.size();
+                docsByProductId.put(product.getId(), doc);
+                productIdsByDoc.add(product.getId());
+                entriesByDoc.add(null);
+                liveDocuments++;
+            } else {
+                Entry previous = entriesByDoc.get(doc);
+                // Stock and price changes leave the text alone; nothing to do
+                if (Arrays.equals(previous.terms(), newTerms) && Arrays.equals(previous.weights(), newWeights)) {
+                    return;
+                }
+                unindex(doc, previous);
+            }
+            for (int i = 0; i < newTerms.length; i++) {
+                Postings postings = postingsByTerm.get(newTerms[i]);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByTerm.put(newTerms[i], postings);
+                    terms.put(newTerms[i], postings);
+                }
+                postings.add(doc, newWeights[i]);
+            }
+            entriesByDoc.set(doc, new Entry(newTerms, newWeights));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docsByProductId.remove(productId);
+            if (doc == null) return;
+            unindex(doc, entriesByDoc.get(doc));
+            // The document number is not reused
+            entriesByDoc.set(doc, null);
+            productIdsByDoc.set(doc, null);
+            liveDocuments--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(int doc, Entry entry) {
+        for (String term : entry.terms()) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings == null) continue;
+            postings.remove(doc);
+            if (postings.size == 0) {
+                postingsByTerm.remove(term);
+                terms.remove(term);
+            }
+        }
+    }
+
+    // Product ids of the best matches, highest score first
+    public List<String> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) return List.of();
+        if (tokens.size() > MAX_QUERY_TOKENS) tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+
+        lock.readLock().lock();
+        Scratch s = scratch.get();
+        try {
+            s.ensure(productIdsByDoc.size());
+            // Most selective token first: later tokens only extend documents that
+            // matched every token before them, so the candidate set shrinks early
+            List<Expansion> expanded = new ArrayList<>();
+            for (String token : tokens) {
+                List<Map.Entry<String, Postings>> matches = new ArrayList<>();
+                int postingCount = 0;
+                for (Map.Entry<String, Postings> match : terms.tailMap(token, true).entrySet()) {
+                    if (!match.getKey().startsWith(token) || matches.size() == MAX_PREFIX_EXPANSIONS) break;
+                    matches.add(match);
+                    postingCount += match.getValue().size;
+                }
+                if (matches.isEmpty()) return List.of();
+                expanded.add(new Expansion(token, matches, postingCount));
+            }
+            expanded.sort(Comparator.comparingInt(Expansion::postingCount));
+
+            for (int t = 0; t < expanded.size(); t++) {
+                Expansion expansion = expanded.get(t);
+                for (Map.Entry<String, Postings> match : expansion.matches()) {
+                    Postings postings = match.getValue();
+                    float idf = (float) Math.log(1 + (double) liveDocuments / postings.size);
+                    float factor = match.getKey().length() == expansion.token().length() ? idf : idf * PREFIX_FACTOR;
+                    for (int i = 0; i < postings.size; i++) {
+                        accumulate(s, postings.docs[i], t, postings.weights[i] * factor);
+                    }
+                }
+            }
+            return topMatches(s, tokens.size(), limit);
+        } finally {
+            for (int i = 0; i < s.touchedCount; i++) {
+                int doc = s.touched[i];
+                s.score[doc] = 0;
+                s.best[doc] = 0;
+                s.matched[doc] = 0;
+                s.lastToken[doc] = 0;
+            }
+            s.touchedCount = 0;
+            lock.readLock().unlock();
+        }
+    }
+
+    // A document counts once per token, with its best-scoring term for that token.
+    // lastToken holds token index + 1 so the zeroed array means "none yet".
+    private static void accumulate(Scratch s, int doc, int token, float score) {
+        if (s.lastToken[doc] != token + 1) {
+            if (token > 0 && s.matched[doc] < token) return; // missed an earlier token
+            if (s.matched[doc] == 0) s.touched[s.touchedCount++] = doc;
+            s.lastToken[doc] = token + 1;
+            s.matched[doc]++;
+            s.best[doc] = score;
+            s.score[doc] += score;
+        } else if (score > s.best[doc]) {
+            s.score[doc] += score - s.best[doc];
+            s.best[doc] = score;
+        }
+    }
+
+    private List<String> topMatches(Scratch s, int tokenCount, int limit) {
+        // Min-heap of the best documents so far; ties go to the older product
+        Comparator<Integer> byScore =
+            (a, b) -> s.score[a] != s.score[b] ? Float.compare(s.score[a], s.score[b]) : Integer.compare(b, a);
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, byScore);
+        for (int i = 0; i < s.touchedCount; i++) {
+            int doc = s.touched[i];
+            if (s.matched[doc] != tokenCount) continue;
+            if (top.size() < limit) {
+                top.add(doc);
+            } else if (s.score[doc] >= s.score[top.peek()] && byScore.compare(doc, top.peek()) > 0) {
+                top.poll();
+                top.add(doc);
+            }
+        }
+        String[] ids = new String[top.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = productIdsByDoc.get(top.poll());
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static void addField(Map<String, Float> weighted, String text, float weight) {
+        for (String token : tokenize(text)) {
+            weighted.merge(token, weight, Float::sum);
+        }
+    }
+
+    // Lower-cased runs of letters and digits
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) return List.of();
+        List<String> tokens = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
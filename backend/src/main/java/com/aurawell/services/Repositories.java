@@ -0,0 +1,52 @@
+package com.aurawell.services;
+
+// Chooses the storage backend once per process.
+//   STORAGE_BACKEND=json (default)  in-memory DataManager with JSON snapshots
+//   STORAGE_BACKEND=jdbc            JdbcRepository; JDBC_URL defaults to an H2
+//                                   file database in DATA_DIR, JDBC_POOL_SIZE to 10
+// On first start with an empty database the JSON data is imported.
+public class Repositories {
+    private static Repository instance;
+
+    private Repositories() {}
+
+    public static synchronized Repository get() {
+        if (instance == null) {
+            instance = create();
+        }
+        return instance;
+    }
+
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.shutdown();
+            instance = null;
+        }
+    }
+
+    private static Repository create() {
+        String backend = System.getenv("STORAGE_BACKEND");
+        if (backend == null || backend.isEmpty() || backend.equalsIgnoreCase("json")) {
+            return DataManager.getInstance();
+        }
+        if (!backend.equalsIgnoreCase("jdbc")) {
+            throw new IllegalStateException("Unknown STORAGE_BACKEND: " + backend);
+        }
+
+        String url = System.getenv("JDBC_URL");
+        if (url == null || url.isEmpty()) {
+            url = "jdbc:h2:file:" + DataManager.getDataDir() + "aurawell";
+        }
+        String poolSize = System.getenv("JDBC_POOL_SIZE");
+        JdbcRepository repository = new JdbcRepository(url,
+            poolSize != null && !poolSize.isEmpty() ? Integer.parseInt(poolSize) : 10);
+
+        if (repository.isEmpty()) {
+            DataManager source = DataManager.getInstance();
+            repository.importFrom(source);
+            source.shutdown();
+            System.out.println("Imported JSON data into " + url);
+        }
+        return repository;
+    }
+}
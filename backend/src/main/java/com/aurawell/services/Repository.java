@@ -0,0 +1,49 @@
+package com.aurawell.services;
+
+import com.aurawell.models.*;
+
+import java.util.List;
+
+// Storage SPI the servlets program against. DataManager keeps everything in
+// memory backed by JSON snapshots; JdbcRepository keeps it in an embedded SQL
+// database. Pick one with STORAGE_BACKEND, see Repositories.
+public interface Repository {
+    // Users
+    List<User> getUsers();
+    User getUserById(String id);
+    User getUserByEmail(String email);
+    User authenticateUser(String email, String password);
+    User createUser(User user); // null if the email is taken
+
+    // Products
+    List<Product> getProducts();
+    List<Product> getProductsByCategory(String category);
+    Product getProductById(String id);
+    List<Product> searchProducts(String query, int limit); // best match first
+    ProductPage findProducts(ProductQuery query);
+    long getCatalogVersion(); // changes whenever any product (including its stock) changes
+    Product createProduct(Product product);
+    Product updateProduct(String id, Product updatedProduct); // null if not found
+    boolean deleteProduct(String id);
+
+    // Carts; the returned cart is a read-only snapshot
+    Cart getCartByUserId(String userId);
+    Cart addCartItem(String userId, String productId, int quantity);
+    Cart updateCartItem(String userId, String productId, int quantity);
+    Cart removeCartItem(String userId, String productId);
+    Cart updateCart(Cart cart);
+    void clearCart(String userId);
+
+    // Orders
+    List<Order> getOrders();
+    List<Order> getOrdersPage(int offset, int limit); // newest first
+    List<Order> findOrders(OrderQuery query); // at most query.getLimit() orders
+    List<Order> getOrdersByUserId(String userId);
+    Order getOrderById(String id);
+    Order createOrder(Order order);
+    Order updateOrderStatus(String orderId, String status); // null if not found
+    Order checkout(String userId, String shippingAddress) throws CheckoutException;
+
+    // Flushes pending writes and releases files/connections
+    void shutdown();
+}
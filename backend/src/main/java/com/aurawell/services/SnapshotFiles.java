@@ -0,0 +1,203 @@
+package com.aurawell.services;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Crash-safe snapshot files. A snapshot is written to a temp file, fsynced and
+// renamed over the live file, so readers only ever see a complete generation.
+// A "<file>.crc" sidecar records the checksum of the current generation and
+// the ones before it; the sidecar is replaced before the data file, so a crash
+// between the two renames still leaves a data file matching one of them.
+//
+// The sidecar also carries a generation number that goes up with every write.
+// When the same data may live in two files (users.json and users.bin), the
+// write names the file it supersedes: the new generation is numbered past
+// both, and the superseded file is deleted once the new one is in place.
+// newer() then picks between the two by generation, not by modification
+// time, which is too coarse on some filesystems to order two quick writes.
+public class SnapshotFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int KEPT_CHECKSUMS = 3;
+    private static final String GENERATION = "generation ";
+
+    public interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    public interface BinaryContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public interface Parser<T> {
+        T parse(Reader reader) throws IOException;
+    }
+
+    public interface BufferParser<T> {
+        T parse(ByteBuffer buffer) throws IOException;
+    }
+
+    private SnapshotFiles() {}
+
+    public static void write(Path target, Content content) throws IOException {
+        write(target, content, null);
+    }
+
+    public static void write(Path target, Content content, Path superseded) throws IOException {
+        writeBinary(target, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            content.writeTo(writer);
+            writer.flush();
+        }, superseded);
+    }
+
+    public static void writeBinary(Path target, BinaryContent content) throws IOException {
+        writeBinary(target, content, null);
+    }
+
+    // superseded, if not null, is another file holding the same data, e.g. in
+    // the other format; it is deleted after the new snapshot is durable
+    public static void writeBinary(Path target, BinaryContent content, Path superseded) throws IOException {
+        long generation = generation(target);
+        if (superseded != null) generation = Math.max(generation, generation(superseded));
+
+        Path dataTemp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(dataTemp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(channel), crc), BUFFER_SIZE);
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+
+        Path sidecar = sidecarOf(target);
+        List<String> previous = acceptedChecksums(target, sidecar);
+        Path sidecarTemp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(sidecarTemp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder text = new StringBuilder(Long.toHexString(crc.getValue())).append('\n');
+            for (String checksum : previous.subList(0, Math.min(previous.size(), KEPT_CHECKSUMS - 1))) {
+                text.append(checksum).append('\n');
+            }
+            text.append(GENERATION).append(generation + 1).append('\n');
+            channel.write(StandardCharsets.UTF_8.encode(text.toString()));
+            channel.force(true);
+        }
+
+        Files.move(sidecarTemp, sidecar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(dataTemp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (superseded != null && !superseded.equals(target)) {
+            // Data before sidecar: a leftover sidecar on its own is harmless
+            Files.deleteIfExists(superseded);
+            Files.deleteIfExists(sidecarOf(superseded));
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    // Whichever of two files holding the same data was written last, or null
+    // if neither exists. Files from before generations were recorded count as
+    // generation 0, and a tie between them falls back to modification time.
+    public static Path newer(Path first, Path second) throws IOException {
+        if (!Files.exists(first)) return Files.exists(second) ? second : null;
+        if (!Files.exists(second)) return first;
+        long firstGeneration = generation(first);
+        long secondGeneration = generation(second);
+        if (firstGeneration != secondGeneration) {
+            return firstGeneration > secondGeneration ? first : second;
+        }
+        return Files.getLastModifiedTime(first).compareTo(Files.getLastModifiedTime(second)) >= 0 ? first : second;
+    }
+
+    // 0 when the file has no sidecar or its sidecar predates generations
+    public static long generation(Path target) throws IOException {
+        Path sidecar = sidecarOf(target);
+        if (!Files.exists(sidecar)) return 0;
+        for (String line : Files.readAllLines(sidecar, StandardCharsets.UTF_8)) {
+            if (line.startsWith(GENERATION)) {
+                try {
+                    return Long.parseLong(line.substring(GENERATION.length()).trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad generation in " + sidecar);
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Parses the snapshot while checksumming it in the same pass. Files without
+    // a sidecar (seed data, files from older versions) are accepted as they are.
+    public static <T> T read(Path target, Parser<T> parser) throws IOException {
+        CRC32C crc = new CRC32C();
+        T result;
+        try (InputStream in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(target), BUFFER_SIZE), crc)) {
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            result = parser.parse(reader);
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        verifyChecksum(target, crc);
+        return result;
+    }
+
+    // Memory-maps the snapshot instead of streaming it; the checksum is taken
+    // over the mapped pages before the parser sees them.
+    public static <T> T readMapped(Path target, BufferParser<T> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate());
+            verifyChecksum(target, crc);
+            return parser.parse(buffer);
+        }
+    }
+
+    private static void verifyChecksum(Path target, CRC32C crc) throws IOException {
+        Path sidecar = sidecarOf(target);
+        if (Files.exists(sidecar)) {
+            List<String> accepted = Files.readAllLines(sidecar, StandardCharsets.UTF_8);
+            if (!accepted.contains(Long.toHexString(crc.getValue()))) {
+                throw new IOException("Checksum mismatch in " + target);
+            }
+        }
+    }
+
+    private static List<String> acceptedChecksums(Path target, Path sidecar) throws IOException {
+        if (Files.exists(sidecar)) {
+            return Files.readAllLines(sidecar, StandardCharsets.UTF_8).stream()
+                .filter(line -> !line.startsWith(GENERATION))
+                .toList();
+        }
+        return Files.exists(target) ? List.of(checksumOf(target)) : List.of();
+    }
+
+    private static String checksumOf(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream in = new CheckedInputStream(Files.newInputStream(file), crc)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static Path sidecarOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".crc");
+    }
+
+    // Makes the renames themselves durable. Not supported on every platform.
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+}
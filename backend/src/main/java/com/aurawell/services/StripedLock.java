@@ -0,0 +1,37 @@
+package com.aurawell.services;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks shared by hash of key. Writers to the same entity
+// serialize on one stripe while writers to unrelated entities rarely contend.
+public class StripedLock {
+    private final ReentrantLock[] stripes;
+
+    public StripedLock(int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock forKey(String key) {
+        return stripes[indexOf(key)];
+    }
+
+    // Stripes covering all keys, de-duplicated and in index order. Acquiring
+    // them in this order lets multi-key writers run without deadlocking.
+    public List<ReentrantLock> forKeys(Collection<String> keys) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (String key : keys) {
+            indexes.add(indexOf(key));
+        }
+        return indexes.stream().map(i -> stripes[i]).toList();
+    }
+
+    private int indexOf(String key) {
+        return (key.hashCode() & 0x7fffffff) % stripes.length;
+    }
+}
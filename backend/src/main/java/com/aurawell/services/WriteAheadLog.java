@@ -0,0 +1,103 @@
+package com.aurawell.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// Append-only log of compact, one-line mutation records. DataManager appends a
+// record per mutation and periodically folds the log into the JSON snapshots.
+public class WriteAheadLog {
+    private static final Metrics.Histogram FSYNC_TIME = Metrics.get().histogram(
+        DataManager.PERSISTENCE_METRIC, DataManager.PERSISTENCE_HELP, "operation", "wal_fsync");
+
+    private final Path logPath;
+    private FileChannel channel;
+    private int recordCount;
+
+    public WriteAheadLog(String filename) throws IOException {
+        this.logPath = Paths.get(filename);
+        this.channel = openForAppend();
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        return FileChannel.open(logPath,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Reads every intact record currently in the log, in append order. Each line
+    // is "<crc32c> <record>"; reading stops at the first line whose checksum does
+    // not match, and a trailing partial line (torn write) is ignored.
+    public synchronized List<String> readRecords() throws IOException {
+        List<String> records = new ArrayList<>();
+        if (!Files.exists(logPath)) {
+            return records;
+        }
+        String content = Files.readString(logPath, StandardCharsets.UTF_8);
+        int start = 0;
+        int newline;
+        while ((newline = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, newline);
+            start = newline + 1;
+            if (line.isBlank()) continue;
+            int space = line.indexOf(' ');
+            String record = space > 0 ? line.substring(space + 1) : "";
+            if (space <= 0 || !line.substring(0, space).equals(checksum(record))) {
+                System.err.println("Write-ahead log corrupt after " + records.size() + " records, ignoring the rest");
+                break;
+            }
+            records.add(record);
+        }
+        recordCount = records.size();
+        return records;
+    }
+
+    private static String checksum(String record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    public synchronized void append(String record) throws IOException {
+        appendAll(List.of(record));
+    }
+
+    // Writes several records with one write call
+    public synchronized void appendAll(List<String> records) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(checksum(record)).append(' ').append(record).append('\n');
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(sb.toString());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordCount += records.size();
+    }
+
+    // Flushes appended records to the storage device
+    public synchronized void force() throws IOException {
+        long start = System.nanoTime();
+        channel.force(false);
+        FSYNC_TIME.recordSince(start);
+    }
+
+    // Drops all records; called once their effects are captured in a snapshot.
+    public synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        recordCount = 0;
+    }
+
+    public synchronized int getRecordCount() { return recordCount; }
+
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
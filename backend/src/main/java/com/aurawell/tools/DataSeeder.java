@@ -0,0 +1,116 @@
+package com.aurawell.tools;
+
+import com.aurawell.models.*;
+import com.aurawell.services.BinarySnapshot;
+import com.aurawell.services.SnapshotFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Fills a data directory with synthetic users, products, carts and orders
+// (see SyntheticData), for load tests and for trying the server at
+// production-like volumes.
+//
+//   java -cp <classpath> com.aurawell.tools.DataSeeder <dataDir> [--users n] [--products n]
+//       [--carts n] [--cart-items n] [--orders n] [--order-months n] [--format json|binary] [--force]
+//
+// Orders are written as a single orders.json (or .bin), which the server
+// splits into monthly segments on its first start. An existing data
+// directory is only replaced with --force, which also drops its log and
+// order segments so nothing old is replayed over the new data.
+public class DataSeeder {
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create(); // as DataManager
+    private static final List<String> DATA_FILES = List.of(
+        "users.json", "users.bin", "products.json", "products.bin", "carts.json", "carts.bin",
+        "orders.json", "orders.bin", "orders.json.migrated", "orders.bin.migrated", "wal.log");
+
+    public record Volumes(int users, int products, int carts, int itemsPerCart, int orders, int orderMonths) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Usage: DataSeeder <dataDir> [--users n] [--products n] [--carts n] [--cart-items n]"
+                + " [--orders n] [--order-months n] [--format json|binary] [--force]");
+            System.exit(2);
+        }
+        Path dir = Paths.get(args[0]);
+        int users = 10_000, products = 2_000, carts = -1, itemsPerCart = 3, orders = 50_000, orderMonths = 12;
+        boolean binary = false, force = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users" -> users = Integer.parseInt(args[++i]);
+                case "--products" -> products = Integer.parseInt(args[++i]);
+                case "--carts" -> carts = Integer.parseInt(args[++i]);
+                case "--cart-items" -> itemsPerCart = Integer.parseInt(args[++i]);
+                case "--orders" -> orders = Integer.parseInt(args[++i]);
+                case "--order-months" -> orderMonths = Integer.parseInt(args[++i]);
+                case "--format" -> binary = args[++i].equalsIgnoreCase("binary");
+                case "--force" -> force = true;
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        Volumes volumes = new Volumes(users, products, carts < 0 ? users / 2 : carts, itemsPerCart, orders, orderMonths);
+        seed(dir, volumes, binary, force);
+        System.out.println("Seeded " + dir + " with " + volumes);
+    }
+
+    // True if the directory already holds snapshots, a log or order segments
+    public static boolean hasData(Path dir) {
+        if (Files.exists(dir.resolve("orders"))) return true;
+        for (String name : DATA_FILES) {
+            if (Files.exists(dir.resolve(name))) return true;
+        }
+        return false;
+    }
+
+    public static void seed(Path dir, Volumes volumes, boolean binary, boolean force) throws IOException {
+        Files.createDirectories(dir);
+        if (hasData(dir) && !force) {
+            throw new IOException(dir + " already holds data; use --force to replace it");
+        }
+        for (String name : DATA_FILES) {
+            Files.deleteIfExists(dir.resolve(name));
+            Files.deleteIfExists(dir.resolve(name + ".crc"));
+        }
+        deleteRecursively(dir.resolve("orders"));
+
+        // users is at least 1 so there is always an admin (user-0)
+        int userCount = Math.max(1, volumes.users());
+        int productCount = Math.max(1, volumes.products());
+        SyntheticData data = new SyntheticData(42);
+        List<User> users = data.users(userCount);
+        List<Product> products = data.products(productCount);
+        List<Cart> carts = data.carts(Math.min(volumes.carts(), userCount), productCount, volumes.itemsPerCart());
+        List<Order> orders = data.orders(volumes.orders(), userCount, productCount, volumes.orderMonths());
+
+        if (binary) {
+            SnapshotFiles.writeBinary(dir.resolve("users.bin"), out -> BinarySnapshot.writeUsers(users, out));
+            SnapshotFiles.writeBinary(dir.resolve("products.bin"), out -> BinarySnapshot.writeProducts(products, out));
+            SnapshotFiles.writeBinary(dir.resolve("carts.bin"), out -> BinarySnapshot.writeCarts(carts, out));
+            SnapshotFiles.writeBinary(dir.resolve("orders.bin"), out -> BinarySnapshot.writeOrders(orders, out));
+        } else {
+            SnapshotFiles.write(dir.resolve("users.json"), writer -> gson.toJson(users, writer));
+            SnapshotFiles.write(dir.resolve("products.json"), writer -> gson.toJson(products, writer));
+            SnapshotFiles.write(dir.resolve("carts.json"), writer -> gson.toJson(carts, writer));
+            SnapshotFiles.write(dir.resolve("orders.json"), writer -> gson.toJson(orders, writer));
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.aurawell.tools;
+
+import com.aurawell.models.*;
+import com.aurawell.services.BinarySnapshot;
+import com.aurawell.services.SnapshotFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Converts the snapshots in a data directory between the JSON and binary formats.
+//
+//   java -cp <classpath> com.aurawell.tools.SnapshotConverter to-binary|to-json <dataDir>
+//
+// Run it with the server stopped and the write-ahead log compacted (a clean
+// shutdown does that), otherwise logged changes are not part of the output.
+// Each converted file replaces its source, which is deleted once the new one
+// is written, the same as when the server switches SNAPSHOT_FORMAT.
+public class SnapshotConverter {
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("to-binary") || args[0].equals("to-json"))) {
+            System.err.println("Usage: SnapshotConverter to-binary|to-json <dataDir>");
+            System.exit(2);
+        }
+        boolean toBinary = args[0].equals("to-binary");
+        Path dir = Paths.get(args[1]);
+
+        List<User> users = read(dir, "users", new TypeToken<List<User>>(){}.getType(), BinarySnapshot::readUsers, toBinary);
+        List<Product> products = read(dir, "products", new TypeToken<List<Product>>(){}.getType(), BinarySnapshot::readProducts, toBinary);
+        List<Cart> carts = read(dir, "carts", new TypeToken<List<Cart>>(){}.getType(), BinarySnapshot::readCarts, toBinary);
+        List<Order> orders = read(dir, "orders", new TypeToken<List<Order>>(){}.getType(), BinarySnapshot::readOrders, toBinary);
+
+        if (toBinary) {
+            if (users != null) SnapshotFiles.writeBinary(dir.resolve("users.bin"), out -> BinarySnapshot.writeUsers(users, out), dir.resolve("users.json"));
+            if (products != null) SnapshotFiles.writeBinary(dir.resolve("products.bin"), out -> BinarySnapshot.writeProducts(products, out), dir.resolve("products.json"));
+            if (carts != null) SnapshotFiles.writeBinary(dir.resolve("carts.bin"), out -> BinarySnapshot.writeCarts(carts, out), dir.resolve("carts.json"));
+            if (orders != null) SnapshotFiles.writeBinary(dir.resolve("orders.bin"), out -> BinarySnapshot.writeOrders(orders, out), dir.resolve("orders.json"));
+        } else {
+            writeJson(dir.resolve("users.json"), users);
+            writeJson(dir.resolve("products.json"), products);
+            writeJson(dir.resolve("carts.json"), carts);
+            writeJson(dir.resolve("orders.json"), orders);
+        }
+    }
+
+    private static <T> List<T> read(Path dir, String name, Type type,
+                                    SnapshotFiles.BufferParser<List<T>> binaryParser, boolean fromJson) throws IOException {
+        Path source = dir.resolve(name + (fromJson ? ".json" : ".bin"));
+        if (!Files.exists(source)) {
+            System.out.println("Skipping " + source + " (not found)");
+            return null;
+        }
+        List<T> items = fromJson
+            ? SnapshotFiles.read(source, reader -> gson.fromJson(reader, type))
+            : SnapshotFiles.readMapped(source, binaryParser);
+        System.out.println("Read " + items.size() + " records from " + source);
+        return items;
+    }
+
+    private static void writeJson(Path target, List<?> items) throws IOException {
+        if (items != null) {
+            SnapshotFiles.write(target, writer -> gson.toJson(items, writer), target.resolveSibling(
+                target.getFileName().toString().replace(".json", ".bin")));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.aurawell.tools;
+
+import com.aurawell.models.Order;
+import com.aurawell.services.BinarySnapshot;
+import com.aurawell.services.SnapshotFiles;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Compares cold-start load time of a synthetic order history stored as
+// pretty-printed JSON (what DataManager writes by default) and as a binary
+// snapshot.
+//
+//   java -cp <classpath> com.aurawell.tools.SnapshotLoadBenchmark [orderCount]
+public class SnapshotLoadBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<Order> orders = new SyntheticData(42).orders(orderCount, Math.max(1, orderCount / 10), 200, 12);
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Type type = new TypeToken<List<Order>>(){}.getType();
+        Path dir = Files.createTempDirectory("aurawell-snapshot-bench");
+        Path json = dir.resolve("orders.json");
+        Path binary = dir.resolve("orders.bin");
+        SnapshotFiles.write(json, writer -> gson.toJson(orders, writer));
+        SnapshotFiles.writeBinary(binary, out -> BinarySnapshot.writeOrders(orders, out));
+
+        System.out.printf("%d orders: json %,d bytes, binary %,d bytes%n",
+            orderCount, Files.size(json), Files.size(binary));
+        double jsonMillis = measure(() -> {
+            List<Order> loaded = SnapshotFiles.read(json, reader -> gson.fromJson(reader, type));
+            return loaded.size();
+        });
+        double binaryMillis = measure(() -> SnapshotFiles.readMapped(binary, BinarySnapshot::readOrders).size());
+        System.out.printf("json   load: %.1f ms (median of %d)%n", jsonMillis, MEASURED_RUNS);
+        System.out.printf("binary load: %.1f ms (median of %d)%n", binaryMillis, MEASURED_RUNS);
+
+        for (Path file : List.of(json, binary, dir.resolve("orders.json.crc"), dir.resolve("orders.bin.crc"), dir)) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface Load {
+        int run() throws IOException;
+    }
+
+    private static double measure(Load load) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            load.run();
+        }
+        double[] millis = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            load.run();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis[MEASURED_RUNS / 2];
+    }
+}
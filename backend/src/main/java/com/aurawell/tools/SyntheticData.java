@@ -0,0 +1,109 @@
+package com.aurawell.tools;
+
+import com.aurawell.models.Cart;
+import com.aurawell.models.Order;
+import com.aurawell.models.OrderItem;
+import com.aurawell.models.Product;
+import com.aurawell.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Deterministic synthetic users, products, carts and orders for benchmarks
+// and load tests: the same seed gives the same data. Ids and emails follow a
+// pattern (user-17, product-42, user17@example.com) so callers can pick
+// existing entities without looking them up. user-0 is an admin; every user's
+// password is PASSWORD.
+public class SyntheticData {
+    public static final String PASSWORD = "password123";
+
+    private static final String[] CATEGORIES = {"vitamins", "supplements", "aromatherapy"};
+    private static final String[] AGE_GROUPS = {"toddler", "child", "teen", "adult", "elderly", "all"};
+    private static final String[] STATUSES = {"pending", "processing", "shipped", "delivered", "cancelled"};
+    private static final String[] ADJECTIVES = {"Daily", "Organic", "Calming", "Active", "Gentle", "Herbal",
+        "Advanced", "Natural", "Restful", "Immune", "Vital", "Pure"};
+    private static final String[] NOUNS = {"Multivitamin", "Omega-3", "Magnesium", "Lavender Oil", "Probiotic",
+        "Vitamin D3", "Zinc", "Eucalyptus Blend", "Collagen", "Iron", "Melatonin", "Peppermint Oil"};
+    private static final String[] FORMS = {"Gummies", "Capsules", "Tablets", "Drops", "Powder", "Roll-on"};
+
+    private final Random random;
+
+    public SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static String userId(int index) { return "user-" + index; }
+    public static String productId(int index) { return "product-" + index; }
+    public static String email(int index) { return "user" + index + "@example.com"; }
+
+    public List<User> users(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User(email(i), PASSWORD, "First" + i, "Last" + i);
+            user.setId(userId(i));
+            if (i == 0) user.setRole("admin");
+            users.add(user);
+        }
+        return users;
+    }
+
+    public List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+            String noun = NOUNS[random.nextInt(NOUNS.length)];
+            String form = FORMS[random.nextInt(FORMS.length)];
+            Product product = new Product(adjective + " " + noun + " " + form + " " + i,
+                adjective + " " + noun.toLowerCase() + " in " + form.toLowerCase() + " for everyday wellness.",
+                Math.round((4.99 + random.nextInt(6000) / 100.0) * 100) / 100.0,
+                random.nextInt(500),
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                AGE_GROUPS[random.nextInt(AGE_GROUPS.length)],
+                "/images/products/placeholder.jpg");
+            product.setId(productId(i));
+            products.add(product);
+        }
+        return products;
+    }
+
+    // One cart per user with itemsPerCart distinct products (fewer if the
+    // catalog is smaller)
+    public List<Cart> carts(int userCount, int productCount, int itemsPerCart) {
+        List<Cart> carts = new ArrayList<>(userCount);
+        int items = Math.min(itemsPerCart, productCount);
+        for (int i = 0; i < userCount; i++) {
+            Cart cart = new Cart(userId(i));
+            int first = random.nextInt(productCount);
+            for (int j = 0; j < items; j++) {
+                cart.addItem(productId((first + j * 7919) % productCount), 1 + random.nextInt(3));
+            }
+            carts.add(cart);
+        }
+        return carts;
+    }
+
+    // Orders placed over the last `months` months, oldest first
+    public List<Order> orders(int count, int userCount, int productCount, int months) {
+        long now = System.currentTimeMillis();
+        long span = TimeUnit.DAYS.toMillis(30L * Math.max(1, months));
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<OrderItem> items = new ArrayList<>();
+            double total = 0;
+            for (int j = 0, lines = 1 + random.nextInt(5); j < lines; j++) {
+                int product = random.nextInt(productCount);
+                double price = 5 + product % 50;
+                int quantity = 1 + random.nextInt(3);
+                items.add(new OrderItem(productId(product), "Product " + product, quantity, price));
+                total += price * quantity;
+            }
+            Order order = new Order(userId(random.nextInt(userCount)), items, total, (i % 1000) + " Wellness Street");
+            order.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+            order.setCreatedAt(now - span + span * i / Math.max(1, count));
+            orders.add(order);
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,162 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Cart;
+import com.aurawell.models.CartItem;
+import com.aurawell.models.Order;
+import com.aurawell.models.OrderItem;
+import com.aurawell.models.Product;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Many writers hammering the same carts and the same product at once. The
+// striped locks in DataManager must neither lose a cart update nor sell more
+// units than are in stock, and what was committed must survive a restart.
+//
+// DATA_DIR is read once per JVM, so the store lives in a temporary directory
+// set before DataManager is first used.
+class DataManagerConcurrencyTest {
+    private static final int WRITERS = 64;
+    private static final int ROUNDS = 20;
+
+    @TempDir
+    static Path dataDir;
+
+    private static DataManager data;
+
+    @BeforeAll
+    static void openStore() {
+        System.setProperty("DATA_DIR", dataDir.toString());
+        data = DataManager.getInstance();
+    }
+
+    @AfterAll
+    static void closeStore() {
+        DataManager.getInstance().shutdown();
+    }
+
+    @Test
+    void concurrentAddsToOneCartAreAllKept() throws Exception {
+        Product product = data.createProduct(new Product("Shared", "", 1.0, 1_000_000, "vitamins", "adult", null));
+        String userId = "shared-cart-user";
+
+        runWriters(writer -> {
+            for (int round = 0; round < ROUNDS; round++) {
+                data.addCartItem(userId, product.getId(), 1);
+            }
+        });
+
+        assertEquals(WRITERS * ROUNDS, quantityOf(data.getCartByUserId(userId), product.getId()));
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        // Half as many units as there are checkouts, so the product sells out mid-run
+        int hotStock = WRITERS * ROUNDS / 2;
+        int coldStock = 1_000_000;
+        Product hot = data.createProduct(new Product("Hot", "", 5.0, hotStock, "supplements", "adult", null));
+        Product cold = data.createProduct(new Product("Cold", "", 2.0, coldStock, "supplements", "adult", null));
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger lowestStock = new AtomicInteger(Integer.MAX_VALUE);
+
+        Thread watcher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                lowestStock.accumulateAndGet(data.getProductById(hot.getId()).getStock(), Math::min);
+            }
+        });
+        watcher.start();
+        try {
+            runWriters(writer -> {
+                String userId = "checkout-user-" + writer;
+                for (int round = 0; round < ROUNDS; round++) {
+                    data.addCartItem(userId, hot.getId(), 1);
+                    data.addCartItem(userId, cold.getId(), 1);
+                    try {
+                        data.checkout(userId, writer + " Stress Street");
+                        placed.incrementAndGet();
+                    } catch (CheckoutException e) {
+                        refused.incrementAndGet();
+                        data.clearCart(userId);
+                    }
+                }
+            });
+        } finally {
+            watcher.interrupt();
+            watcher.join();
+        }
+
+        assertEquals(WRITERS * ROUNDS, placed.get() + refused.get());
+        assertEquals(hotStock, placed.get(), "every unit in stock should have been sold exactly once");
+        assertTrue(lowestStock.get() >= 0, "stock went negative: " + lowestStock.get());
+        assertEquals(0, data.getProductById(hot.getId()).getStock());
+        assertEquals(coldStock - placed.get(), data.getProductById(cold.getId()).getStock());
+
+        int ordered = 0;
+        for (int writer = 0; writer < WRITERS; writer++) {
+            String userId = "checkout-user-" + writer;
+            assertTrue(data.getCartByUserId(userId).getItems().isEmpty());
+            for (Order order : data.getOrdersByUserId(userId)) {
+                ordered += order.getItems().stream()
+                    .filter(item -> item.getProductId().equals(hot.getId()))
+                    .mapToInt(OrderItem::getQuantity)
+                    .sum();
+            }
+        }
+        assertEquals(placed.get(), ordered, "orders and stock disagree");
+
+        // Everything committed is still there after a restart
+        data.shutdown();
+        data = DataManager.getInstance();
+        assertEquals(0, data.getProductById(hot.getId()).getStock());
+        assertEquals(coldStock - placed.get(), data.getProductById(cold.getId()).getStock());
+        int reloaded = 0;
+        for (int writer = 0; writer < WRITERS; writer++) {
+            reloaded += data.getOrdersByUserId("checkout-user-" + writer).size();
+        }
+        assertEquals(placed.get(), reloaded);
+    }
+
+    private interface Writer {
+        void run(int writer) throws Exception;
+    }
+
+    // Starts every writer at once and fails on the first error any of them hit
+    private static void runWriters(Writer body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                int id = writer;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(id);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int quantityOf(Cart cart, String productId) {
+        return cart.getItems().stream()
+            .filter(item -> item.getProductId().equals(productId))
+            .mapToInt(CartItem::getQuantity)
+            .sum();
+    }
+}
@@ -0,0 +1,92 @@
+package com.aurawell.services;
+
+import com.aurawell.models.Product;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Startup after a crash: the products snapshot exists in both formats (the
+// old one not yet deleted) and the log ends in a corrupt record followed by a
+// torn one. The newer snapshot generation is loaded and exactly the intact
+// log records before the corruption are replayed on top of it.
+//
+// Runs in its own JVM (see the surefire settings), as DATA_DIR is read once.
+class DataManagerRecoveryTest {
+    @TempDir
+    static Path dataDir;
+
+    private static final Gson gson = new Gson();
+
+    private static Product product(String id, String name) {
+        Product product = new Product(name, "", 1.0, 10, "vitamins", "adult", null);
+        product.setId(id);
+        return product;
+    }
+
+    private static String putRecord(Product product) {
+        JsonObject record = new JsonObject();
+        record.addProperty("type", "product");
+        record.addProperty("op", "put");
+        record.add("value", gson.toJsonTree(product));
+        return gson.toJson(record);
+    }
+
+    @Test
+    void loadsTheNewerSnapshotAndReplaysTheIntactLog() throws IOException {
+        Path json = dataDir.resolve("products.json");
+        Path binary = dataDir.resolve("products.bin");
+
+        // Generation 1 in JSON, kept aside, then generation 2 in binary
+        List<Product> stale = List.of(product("stale", "Stale"));
+        SnapshotFiles.write(json, writer -> gson.toJson(stale, writer));
+        byte[] staleBytes = Files.readAllBytes(json);
+        byte[] staleSidecar = Files.readAllBytes(dataDir.resolve("products.json.crc"));
+        List<Product> current = List.of(product("current", "Current"));
+        SnapshotFiles.writeBinary(binary, out -> BinarySnapshot.writeProducts(current, out), json);
+        Files.write(json, staleBytes);
+        Files.write(dataDir.resolve("products.json.crc"), staleSidecar);
+        Files.setLastModifiedTime(json, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        WriteAheadLog wal = new WriteAheadLog(dataDir.resolve("wal.log").toString());
+        wal.appendAll(List.of(
+            putRecord(product("logged-1", "Logged 1")),
+            putRecord(product("logged-2", "Logged 2")),
+            putRecord(product("corrupt", "Corrupt")),
+            putRecord(product("after-corrupt", "After corrupt"))));
+        wal.close();
+        String log = Files.readString(dataDir.resolve("wal.log"));
+        Files.writeString(dataDir.resolve("wal.log"), log.replace("\"Corrupt\"", "\"Corrupted\""));
+        Files.writeString(dataDir.resolve("wal.log"), "9f8e {\"type\":\"product\",\"op\":\"put\"",
+            StandardOpenOption.APPEND);
+
+        System.setProperty("DATA_DIR", dataDir.toString());
+        DataManager data = DataManager.getInstance();
+        try {
+            assertNotNull(data.getProductById("current"), "the newer generation was not loaded");
+            assertNull(data.getProductById("stale"), "the superseded snapshot was loaded");
+            assertEquals("Logged 1", data.getProductById("logged-1").getName());
+            assertEquals("Logged 2", data.getProductById("logged-2").getName());
+            assertNull(data.getProductById("corrupt"));
+            assertNull(data.getProductById("after-corrupt"), "replay went past a bad checksum");
+            assertEquals(3, data.getProducts().size());
+        } finally {
+            data.shutdown();
+        }
+
+        // The replay and the shutdown each compacted, in the configured format
+        // (JSON by default): generations 3 and 4, and the binary file is gone
+        assertFalse(Files.exists(binary));
+        assertEquals(4, SnapshotFiles.generation(json));
+        assertEquals(0, Files.size(dataDir.resolve("wal.log")));
+    }
+}
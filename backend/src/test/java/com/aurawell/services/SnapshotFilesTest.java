@@ -0,0 +1,132 @@
+package com.aurawell.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Snapshot files reject damaged content, accept the generation before the
+// current one (a crash between the two renames), and pick the newer of two
+// formats by generation rather than by modification time.
+class SnapshotFilesTest {
+    @TempDir
+    Path dir;
+
+    private static void writeText(Path file, String text) throws IOException {
+        SnapshotFiles.write(file, writer -> writer.write(text));
+    }
+
+    private static String readText(Path file) throws IOException {
+        return SnapshotFiles.read(file, SnapshotFilesTest::readAll);
+    }
+
+    private static String readMappedText(Path file) throws IOException {
+        return SnapshotFiles.readMapped(file, buffer -> StandardCharsets.UTF_8.decode(buffer).toString());
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder text = new StringBuilder();
+        char[] chars = new char[256];
+        int read;
+        while ((read = reader.read(chars)) > 0) text.append(chars, 0, read);
+        return text.toString();
+    }
+
+    private static void flipByte(Path file, int position) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[position] ^= 0x01;
+        Files.write(file, bytes);
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path file = dir.resolve("users.json");
+        writeText(file, "[\"first\"]");
+        assertEquals("[\"first\"]", readText(file));
+        assertEquals("[\"first\"]", readMappedText(file));
+    }
+
+    @Test
+    void rejectsACorruptByte() throws IOException {
+        Path file = dir.resolve("users.json");
+        writeText(file, "[\"first\",\"second\"]");
+        flipByte(file, 5);
+        IOException streamed = assertThrows(IOException.class, () -> readText(file));
+        assertTrue(streamed.getMessage().contains("Checksum mismatch"));
+        assertThrows(IOException.class, () -> readMappedText(file));
+    }
+
+    @Test
+    void acceptsAFileWithoutSidecar() throws IOException {
+        Path file = dir.resolve("products.json");
+        Files.writeString(file, "[]"); // seed data, or written before checksums
+        assertEquals("[]", readText(file));
+    }
+
+    @Test
+    void acceptsThePreviousGenerationAfterACrashBetweenRenames() throws IOException {
+        Path file = dir.resolve("carts.json");
+        writeText(file, "[\"old\"]");
+        Path old = dir.resolve("carts.old");
+        Files.copy(file, old);
+        writeText(file, "[\"new\"]");
+        // The sidecar was replaced but the data file not yet
+        Files.copy(old, file, StandardCopyOption.REPLACE_EXISTING);
+        assertEquals("[\"old\"]", readText(file));
+    }
+
+    @Test
+    void supersedingWriteDeletesTheOtherFormat() throws IOException {
+        Path json = dir.resolve("users.json");
+        Path binary = dir.resolve("users.bin");
+        writeText(json, "[]");
+        SnapshotFiles.writeBinary(binary, out -> out.write(new byte[] {1, 2, 3}), json);
+
+        assertFalse(Files.exists(json));
+        assertFalse(Files.exists(dir.resolve("users.json.crc")));
+        assertEquals(2, SnapshotFiles.generation(binary));
+        assertEquals(binary, SnapshotFiles.newer(binary, json));
+    }
+
+    @Test
+    void newerGoesByGenerationNotModificationTime() throws IOException {
+        Path json = dir.resolve("users.json");
+        Path binary = dir.resolve("users.bin");
+        writeText(json, "[]");
+        Path saved = dir.resolve("saved.json");
+        Path savedSidecar = dir.resolve("saved.json.crc");
+        Files.copy(json, saved);
+        Files.copy(dir.resolve("users.json.crc"), savedSidecar);
+        SnapshotFiles.writeBinary(binary, out -> out.write(new byte[] {1}), json);
+
+        // A crash before the old format was deleted, with its mtime ahead of the new file
+        Files.copy(saved, json);
+        Files.copy(savedSidecar, dir.resolve("users.json.crc"));
+        Files.setLastModifiedTime(json, FileTime.fromMillis(Files.getLastModifiedTime(binary).toMillis() + 60_000));
+
+        assertEquals(1, SnapshotFiles.generation(json));
+        assertEquals(2, SnapshotFiles.generation(binary));
+        assertEquals(binary, SnapshotFiles.newer(json, binary));
+        assertEquals(binary, SnapshotFiles.newer(binary, json));
+    }
+
+    @Test
+    void newerFallsBackToModificationTimeWithoutGenerations() throws IOException {
+        Path json = dir.resolve("orders.json");
+        Path binary = dir.resolve("orders.bin");
+        Files.writeString(json, "[]");
+        Files.write(binary, ByteBuffer.allocate(4).array());
+        Files.setLastModifiedTime(binary, FileTime.fromMillis(Files.getLastModifiedTime(json).toMillis() - 60_000));
+        assertEquals(json, SnapshotFiles.newer(binary, json));
+        assertNull(SnapshotFiles.newer(dir.resolve("none.bin"), dir.resolve("none.json")));
+    }
+}
@@ -0,0 +1,101 @@
+package com.aurawell.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// What survives a crash in the log: every intact line up to the first torn or
+// corrupt one, and nothing after it.
+class WriteAheadLogTest {
+    @TempDir
+    Path dir;
+
+    private Path logFile() {
+        return dir.resolve("wal.log");
+    }
+
+    private void write(String... records) throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(logFile().toString());
+        wal.appendAll(List.of(records));
+        wal.force();
+        wal.close();
+    }
+
+    private List<String> read() throws IOException {
+        WriteAheadLog wal = new WriteAheadLog(logFile().toString());
+        try {
+            return wal.readRecords();
+        } finally {
+            wal.close();
+        }
+    }
+
+    @Test
+    void readsNothingFromANewLog() throws IOException {
+        assertEquals(List.of(), read());
+    }
+
+    @Test
+    void readsRecordsBackInOrder() throws IOException {
+        write("{\"n\":1}", "{\"n\":2}", "{\"n\":3}");
+        assertEquals(List.of("{\"n\":1}", "{\"n\":2}", "{\"n\":3}"), read());
+    }
+
+    @Test
+    void ignoresATornLastLine() throws IOException {
+        write("{\"n\":1}", "{\"n\":2}");
+        // A crash mid-append: part of a line, no newline
+        Files.writeString(logFile(), "1a2b3c {\"n\":", StandardOpenOption.APPEND);
+        assertEquals(List.of("{\"n\":1}", "{\"n\":2}"), read());
+    }
+
+    @Test
+    void stopsAtTheFirstLineWithABadChecksum() throws IOException {
+        write("{\"n\":1}", "{\"n\":2}", "{\"n\":3}");
+        corruptLastByteOfRecord(2);
+        assertEquals(List.of("{\"n\":1}"), read());
+    }
+
+    @Test
+    void dropsACorruptLastLine() throws IOException {
+        write("{\"n\":1}", "{\"n\":2}", "{\"n\":3}");
+        corruptLastByteOfRecord(3);
+        assertEquals(List.of("{\"n\":1}", "{\"n\":2}"), read());
+    }
+
+    @Test
+    void countsWhatWasReadAndAppendsAfterIt() throws IOException {
+        write("{\"n\":1}", "{\"n\":2}");
+        WriteAheadLog wal = new WriteAheadLog(logFile().toString());
+        try {
+            wal.readRecords();
+            assertEquals(2, wal.getRecordCount());
+            wal.append("{\"n\":3}");
+            assertEquals(3, wal.getRecordCount());
+        } finally {
+            wal.close();
+        }
+        assertEquals(3, read().size());
+    }
+
+    // Changes the last character before the newline of the given line (1-based)
+    private void corruptLastByteOfRecord(int line) throws IOException {
+        byte[] bytes = Files.readAllBytes(logFile());
+        int seen = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n' && ++seen == line) {
+                bytes[i - 1] = (byte) (bytes[i - 1] == '}' ? ']' : '}');
+                Files.write(logFile(), bytes);
+                return;
+            }
+        }
+        fail("log has fewer than " + line + " lines");
+    }
+}
@@ -0,0 +1,40 @@
+package com.aurawell.benchmarks;
+
+import com.aurawell.tools.DataSeeder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// A throwaway DATA_DIR holding synthetic users, products and carts (every
+// user has one), for benchmarks that go through DataManager. Snapshots are
+// written in the binary format so a million entities load quickly.
+//
+// DataManager reads its data directory once per JVM, so this has to run
+// before anything touches it; JMH's default of a fresh fork per parameter
+// set makes that hold.
+final class BenchmarkData {
+    private BenchmarkData() {}
+
+    static Path createDataDir(int users, int products, int itemsPerCart) throws IOException {
+        if (System.getenv("DATA_DIR") != null) {
+            // It would win over the property and point DataManager at real data
+            throw new IllegalStateException("Unset DATA_DIR before running the benchmarks");
+        }
+        Path dir = Files.createTempDirectory("aurawell-bench");
+        DataSeeder.seed(dir, new DataSeeder.Volumes(users, products, users, itemsPerCart, 0, 1), true, false);
+        System.setProperty("DATA_DIR", dir.toString());
+        return dir;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.aurawell.benchmarks;
+
+import com.aurawell.api.CartServlet;
+import com.aurawell.tools.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// GET /api/cart end to end inside the servlet: session lookup, the cart and
+// one product lookup per item, building the JSON tree and writing it out.
+// Request, session and response are dynamic proxies answering only what the
+// servlet asks for, so the container's own cost is not included.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class CartServletBenchmark {
+    private static final int USERS = 10_000;
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"1", "10", "50"})
+    public int itemsPerCart;
+
+    private Path dataDir;
+    private CartServlet servlet;
+
+    @State(Scope.Thread)
+    public static class Exchange {
+        final CharArrayWriter body = new CharArrayWriter(8192);
+        final PrintWriter writer = new PrintWriter(body);
+        HttpServletRequest request;
+        HttpServletResponse response;
+        int next;
+        String userId;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // No AuthFilter in front, so the servlet resolves the caller from the session itself
+            HttpSession session = proxy(HttpSession.class, Map.of(
+                "getAttribute", args -> "userId".equals(args[0]) ? userId : null));
+            request = proxy(HttpServletRequest.class, Map.of(
+                "getMethod", args -> "GET",
+                "getSession", args -> session,
+                "getProtocol", args -> "HTTP/1.1"));
+            response = proxy(HttpServletResponse.class, Map.of(
+                "getWriter", args -> writer,
+                "getOutputStream", args -> { throw new IllegalStateException("getWriter() already called"); }));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkData.createDataDir(USERS, PRODUCTS, itemsPerCart);
+        servlet = new CartServlet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dataDir);
+    }
+
+    @Benchmark
+    public int doGet(Exchange exchange) throws ServletException, IOException {
+        exchange.userId = SyntheticData.userId(exchange.next++ % USERS);
+        exchange.body.reset();
+        servlet.service(exchange.request, exchange.response);
+        return exchange.body.size();
+    }
+
+    private interface Answer {
+        Object answer(Object[] args);
+    }
+
+    // Methods not in answers return null, false or 0
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Map<String, Answer> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, args) -> {
+            Answer answer = answers.get(method.getName());
+            if (answer != null) return answer.answer(args);
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) return false;
+            if (returnType == int.class) return 0;
+            if (returnType == long.class) return method.getName().equals("getDateHeader") ? -1L : 0L;
+            return null;
+        });
+    }
+}
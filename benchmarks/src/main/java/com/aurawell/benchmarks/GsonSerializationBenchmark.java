@@ -0,0 +1,74 @@
+package com.aurawell.benchmarks;
+
+import com.aurawell.models.Order;
+import com.aurawell.models.Product;
+import com.aurawell.tools.SyntheticData;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Response bodies as the servlets build them: a compact Gson writing a list
+// of products (catalog pages, search) or orders (order history, admin
+// orders). Serialization goes to a Writer that discards its input, which is
+// how the servlets write to the response, and to a String, which is what
+// CatalogResponseCache keeps. Reading the lists back is the cost of loading
+// a JSON snapshot.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsonSerializationBenchmark {
+    private static final Type PRODUCT_LIST = new TypeToken<List<Product>>(){}.getType();
+    private static final Type ORDER_LIST = new TypeToken<List<Order>>(){}.getType();
+
+    @Param({"20", "200", "2000"})
+    public int size;
+
+    private final Gson gson = new Gson(); // as the servlets
+    private final Writer sink = Writer.nullWriter();
+    private List<Product> products;
+    private List<Order> orders;
+    private String productJson;
+    private String orderJson;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticData data = new SyntheticData(42);
+        products = data.products(size);
+        orders = data.orders(size, Math.max(1, size / 10), 500, 12);
+        productJson = gson.toJson(products, PRODUCT_LIST);
+        orderJson = gson.toJson(orders, ORDER_LIST);
+    }
+
+    @Benchmark
+    public void writeProducts() {
+        gson.toJson(products, PRODUCT_LIST, sink);
+    }
+
+    @Benchmark
+    public String productsToString() {
+        return gson.toJson(products, PRODUCT_LIST);
+    }
+
+    @Benchmark
+    public void writeOrders() {
+        gson.toJson(orders, ORDER_LIST, sink);
+    }
+
+    @Benchmark
+    public List<Product> readProducts() {
+        return gson.fromJson(productJson, PRODUCT_LIST);
+    }
+
+    @Benchmark
+    public List<Order> readOrders() {
+        return gson.fromJson(orderJson, ORDER_LIST);
+    }
+}
@@ -0,0 +1,77 @@
+package com.aurawell.benchmarks;
+
+import com.aurawell.models.Cart;
+import com.aurawell.models.Product;
+import com.aurawell.services.DataManager;
+import com.aurawell.tools.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Point reads through DataManager as the catalog and user base grow. Keys
+// are precomputed and cycled through so the benchmark measures the lookup,
+// not id formatting. They are spread over the whole collection, so at the
+// larger sizes most lookups miss the CPU caches, as real traffic would.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RepositoryLookupBenchmark {
+    private static final int KEYS = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Path dataDir;
+    private DataManager dataManager;
+    private String[] productIds;
+    private String[] userIds;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkData.createDataDir(size, size, 3);
+        dataManager = DataManager.getInstance();
+        productIds = new String[KEYS];
+        userIds = new String[KEYS];
+        Random random = new Random(7);
+        for (int i = 0; i < KEYS; i++) {
+            productIds[i] = SyntheticData.productId(random.nextInt(size));
+            userIds[i] = SyntheticData.userId(random.nextInt(size));
+        }
+        if (dataManager.getProductById(productIds[0]) == null) {
+            throw new IllegalStateException("DataManager did not load the benchmark data from " + dataDir);
+        }
+    }
+
+    // Not DataManager.shutdown(): that would compact and rewrite every
+    // snapshot as JSON just before the fork exits
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dataDir);
+    }
+
+    @Benchmark
+    public Product getProductById(Cursor cursor) {
+        return dataManager.getProductById(productIds[cursor.next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Cart getCartByUserId(Cursor cursor) {
+        return dataManager.getCartByUserId(userIds[cursor.next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Product getProductByIdMissing() {
+        return dataManager.getProductById("no-such-product");
+    }
+}
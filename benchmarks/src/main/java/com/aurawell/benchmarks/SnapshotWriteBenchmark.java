@@ -0,0 +1,87 @@
+package com.aurawell.benchmarks;
+
+import com.aurawell.services.BinarySnapshot;
+import com.aurawell.services.SnapshotFiles;
+import com.aurawell.tools.SyntheticData;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time to write one snapshot file, the work DataManager.saveToFile does for
+// each collection on every compaction: pretty-printed JSON by default, or the
+// binary format with SNAPSHOT_FORMAT=binary. Both go through SnapshotFiles,
+// so the temp file, fsync and rename are included.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SnapshotWriteBenchmark {
+    @Param({"users", "products", "carts", "orders"})
+    public String collection;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create(); // as DataManager
+    private Path dir;
+    private Path target;
+    private List<?> data;
+    private SnapshotFiles.BinaryContent binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticData synthetic = new SyntheticData(42);
+        int products = Math.max(1, size / 10);
+        switch (collection) {
+            case "users" -> {
+                var users = synthetic.users(size);
+                data = users;
+                binary = out -> BinarySnapshot.writeUsers(users, out);
+            }
+            case "products" -> {
+                var list = synthetic.products(size);
+                data = list;
+                binary = out -> BinarySnapshot.writeProducts(list, out);
+            }
+            case "carts" -> {
+                var carts = synthetic.carts(size, products, 3);
+                data = carts;
+                binary = out -> BinarySnapshot.writeCarts(carts, out);
+            }
+            case "orders" -> {
+                var orders = synthetic.orders(size, Math.max(1, size / 10), products, 12);
+                data = orders;
+                binary = out -> BinarySnapshot.writeOrders(orders, out);
+            }
+            default -> throw new IllegalArgumentException("Unknown collection " + collection);
+        }
+        dir = Files.createTempDirectory("aurawell-snapshot-write");
+        target = dir.resolve(collection + (format.equals("json") ? ".json" : ".bin"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        if (format.equals("json")) {
+            SnapshotFiles.write(target, writer -> gson.toJson(data, writer));
+        } else {
+            SnapshotFiles.writeBinary(target, binary);
+        }
+        return Files.size(target);
+    }
+}
@@ -0,0 +1,359 @@
+package com.aurawell.loadtest;
+
+import com.aurawell.services.Metrics;
+import com.aurawell.tools.DataSeeder;
+import com.aurawell.tools.SyntheticData;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives the API with a mix of shopper and admin traffic and writes a JSON
+// report of throughput and latency percentiles per endpoint, so runs against
+// different builds can be compared file to file.
+//
+//   mvn -B package
+//   java -cp target/benchmarks.jar com.aurawell.loadtest.LoadTest [options]
+//
+//   --users n, --products n, --orders n   volumes to seed (10000, 2000, 50000)
+//   --data-dir dir     seed here instead of a temp dir; reused as-is if it has data
+//   --clients n        concurrent virtual users (32)
+//   --duration s       measured seconds (60), after --warmup s (15)
+//   --think-ms n       mean pause between scenarios per client (0: closed loop)
+//   --mix browse=60,cart=25,checkout=5,admin=10   scenario weights
+//   --target url       an already running server; it must hold seeded data
+//   --webapp dir       webapp to serve in-process (../backend/src/main/webapp)
+//   --out file         report path (loadtest-<timestamp>.json)
+//
+// Without --target the server runs in this JVM on embedded Tomcat, so the
+// clients compete with it for CPU; use --target for numbers that matter.
+public class LoadTest {
+    enum Scenario { BROWSE, CART, CHECKOUT, ADMIN }
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final Options options;
+    private final Mix mix;
+    private volatile Results results = new Results();
+    private volatile boolean finished;
+
+    LoadTest(Options options) {
+        this.options = options;
+        this.mix = Mix.parse(options.mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LoadTest test = new LoadTest(options);
+
+        Tomcat tomcat = null;
+        URI base;
+        if (options.target != null) {
+            base = URI.create(options.target);
+        } else {
+            Path dataDir = options.dataDir != null ? Paths.get(options.dataDir) : Files.createTempDirectory("aurawell-load");
+            if (DataSeeder.hasData(dataDir)) {
+                System.out.println("Using the existing data in " + dataDir);
+            } else {
+                System.out.println("Seeding " + dataDir + " ...");
+                DataSeeder.seed(dataDir, new DataSeeder.Volumes(options.users, options.products,
+                    options.users / 2, 3, options.orders, 12), true, false);
+            }
+            if (System.getenv("DATA_DIR") != null) {
+                throw new IllegalStateException("Unset DATA_DIR; the in-process server must use the seeded data");
+            }
+            System.setProperty("DATA_DIR", dataDir.toString());
+            tomcat = startServer(Paths.get(options.webapp));
+            base = URI.create("http://localhost:" + tomcat.getConnector().getLocalPort());
+        }
+
+        try {
+            test.run(base);
+        } finally {
+            if (tomcat != null) {
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        }
+    }
+
+    private static Tomcat startServer(Path webapp) throws Exception {
+        if (!Files.exists(webapp.resolve("WEB-INF/web.xml"))) {
+            throw new IllegalArgumentException("No WEB-INF/web.xml under " + webapp.toAbsolutePath() + "; pass --webapp");
+        }
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("aurawell-tomcat").toString());
+        tomcat.setPort(0);
+        tomcat.getConnector();
+        // web.xml declares everything; the shaded jar has nothing to scan
+        tomcat.setAddDefaultWebXmlToWebapp(false);
+        Context context = tomcat.addWebapp("", webapp.toAbsolutePath().toString());
+        ((StandardJarScanner) context.getJarScanner()).setScanClassPath(false);
+        tomcat.start();
+        return tomcat;
+    }
+
+    void run(URI base) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        // user-0 is the seeded admin; one session serves every client's admin scenarios
+        String adminCookie = VirtualUser.login(this, client, base, SyntheticData.email(0));
+
+        // Java 17 has no virtual threads, so one platform thread per client;
+        // a client blocks on its own request, which is what a browser does
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(options.clients, task -> {
+            Thread thread = new Thread(task, "load-client-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int shoppers = Math.max(1, options.users - 1);
+        for (int i = 0; i < options.clients; i++) {
+            clients.execute(new VirtualUser(this, client, base, 1 + i % shoppers, adminCookie, 1000L + i));
+        }
+
+        System.out.println("Warming up for " + options.warmupSeconds + " s with " + options.clients + " clients ...");
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+        results = new Results();
+        System.out.println("Measuring for " + options.durationSeconds + " s ...");
+        long start = System.nanoTime();
+        Instant startedAt = Instant.now();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+        Results measured = results;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        finished = true;
+        clients.shutdown();
+        if (!clients.awaitTermination(35, TimeUnit.SECONDS)) {
+            clients.shutdownNow();
+        }
+
+        Map<String, Object> report = report(base, startedAt, seconds, measured);
+        Path out = Paths.get(options.out != null ? options.out
+            : "loadtest-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            gson.toJson(report, writer);
+        }
+        printTable(measured, seconds);
+        System.out.println("Report written to " + out.toAbsolutePath());
+    }
+
+    private Map<String, Object> report(URI base, Instant startedAt, double seconds, Results measured) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("target", base.toString());
+        config.put("inProcess", options.target == null);
+        config.put("users", options.users);
+        config.put("products", options.products);
+        config.put("orders", options.orders);
+        config.put("clients", options.clients);
+        config.put("warmupSeconds", options.warmupSeconds);
+        config.put("durationSeconds", options.durationSeconds);
+        config.put("thinkMillis", options.thinkMillis);
+        config.put("mix", options.mix);
+
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("java", System.getProperty("java.version"));
+        environment.put("processors", Runtime.getRuntime().availableProcessors());
+        environment.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long requests = 0, errors = 0;
+        for (Map.Entry<String, EndpointStats> entry : measured.sorted()) {
+            EndpointStats stats = entry.getValue();
+            endpoints.put(entry.getKey(), stats.toReport(seconds));
+            requests += stats.latency.count();
+            errors += stats.errors();
+        }
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("requests", requests);
+        totals.put("errors", errors);
+        totals.put("throughputPerSecond", round(requests / seconds));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("measuredSeconds", round(seconds));
+        report.put("config", config);
+        report.put("environment", environment);
+        report.put("totals", totals);
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    private static void printTable(Results measured, double seconds) {
+        System.out.printf("%n%-30s %9s %9s %8s %9s %9s %9s%n",
+            "endpoint", "requests", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms");
+        for (Map.Entry<String, EndpointStats> entry : measured.sorted()) {
+            Metrics.Histogram latency = entry.getValue().latency;
+            System.out.printf("%-30s %9d %9.1f %8d %9.2f %9.2f %9.2f%n", entry.getKey(), latency.count(),
+                latency.count() / seconds, entry.getValue().errors(),
+                latency.quantile(0.5) * 1000, latency.quantile(0.99) * 1000, latency.quantile(0.999) * 1000);
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    Results results() { return results; }
+    Mix mix() { return mix; }
+    boolean isFinished() { return finished; }
+    long thinkMillis() { return options.thinkMillis; }
+    int products() { return Math.max(1, options.products); }
+
+    // Latencies and outcomes per endpoint; a fresh instance replaces the
+    // warmup one, so nothing from warmup is reported
+    static final class Results {
+        private final ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+        // status -1 is a failed exchange (connection error or timeout)
+        void record(String endpoint, int status, long nanos) {
+            endpoints.computeIfAbsent(endpoint, key -> new EndpointStats()).record(status, nanos);
+        }
+
+        List<Map.Entry<String, EndpointStats>> sorted() {
+            List<Map.Entry<String, EndpointStats>> entries = new ArrayList<>(endpoints.entrySet());
+            entries.sort(Map.Entry.comparingByKey());
+            return entries;
+        }
+    }
+
+    static final class EndpointStats {
+        final Metrics.Histogram latency = new Metrics.Histogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        void record(int status, long nanos) {
+            latency.recordNanos(nanos);
+            if (status < 0) failures.increment();
+            else if (status >= 500) serverErrors.increment();
+            else if (status == 409) conflicts.increment();
+            else if (status >= 400) clientErrors.increment();
+            else ok.increment();
+        }
+
+        // The generator only sends valid requests, so 4xx is an error too;
+        // 409 is not, since checkouts run the seeded stock down over a run
+        long errors() {
+            return clientErrors.sum() + serverErrors.sum() + failures.sum();
+        }
+
+        Map<String, Object> toReport(double seconds) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("requests", latency.count());
+            report.put("throughputPerSecond", round(latency.count() / seconds));
+            report.put("ok", ok.sum());
+            report.put("conflicts", conflicts.sum());
+            report.put("clientErrors", clientErrors.sum());
+            report.put("serverErrors", serverErrors.sum());
+            report.put("failures", failures.sum());
+            report.put("p50Millis", round(latency.quantile(0.5) * 1000));
+            report.put("p90Millis", round(latency.quantile(0.9) * 1000));
+            report.put("p99Millis", round(latency.quantile(0.99) * 1000));
+            report.put("p999Millis", round(latency.quantile(0.999) * 1000));
+            return report;
+        }
+    }
+
+    // Scenario weights, picked per iteration of a client's loop
+    static final class Mix {
+        private final Scenario[] scenarios;
+        private final int[] cumulative;
+
+        private Mix(Scenario[] scenarios, int[] cumulative) {
+            this.scenarios = scenarios;
+            this.cumulative = cumulative;
+        }
+
+        static Mix parse(String spec) {
+            List<Scenario> scenarios = new ArrayList<>();
+            List<Integer> cumulative = new ArrayList<>();
+            int total = 0;
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split("=");
+                if (pair.length != 2) throw new IllegalArgumentException("Bad --mix entry: " + part);
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight <= 0) continue;
+                total += weight;
+                scenarios.add(Scenario.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)));
+                cumulative.add(total);
+            }
+            if (total == 0) throw new IllegalArgumentException("--mix has no positive weights");
+            return new Mix(scenarios.toArray(new Scenario[0]), cumulative.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        Scenario pick(Random random) {
+            int roll = random.nextInt(cumulative[cumulative.length - 1]);
+            for (int i = 0; i < cumulative.length; i++) {
+                if (roll < cumulative[i]) return scenarios[i];
+            }
+            return scenarios[scenarios.length - 1];
+        }
+    }
+
+    static final class Options {
+        int users = 10_000, products = 2_000, orders = 50_000;
+        int clients = 32, warmupSeconds = 15, durationSeconds = 60;
+        long thinkMillis;
+        String mix = "browse=60,cart=25,checkout=5,admin=10";
+        String dataDir, target, out;
+        String webapp = "../backend/src/main/webapp";
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) usage("Missing value for " + args[i]);
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--users" -> options.users = Integer.parseInt(value);
+                    case "--products" -> options.products = Integer.parseInt(value);
+                    case "--orders" -> options.orders = Integer.parseInt(value);
+                    case "--clients" -> options.clients = Integer.parseInt(value);
+                    case "--warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                    case "--duration" -> options.durationSeconds = Integer.parseInt(value);
+                    case "--think-ms" -> options.thinkMillis = Long.parseLong(value);
+                    case "--mix" -> options.mix = value;
+                    case "--data-dir" -> options.dataDir = value;
+                    case "--target" -> options.target = value;
+                    case "--webapp" -> options.webapp = value;
+                    case "--out" -> options.out = value;
+                    default -> usage("Unknown option " + args[i - 1]);
+                }
+            }
+            if (options.clients < 1 || options.durationSeconds < 1) usage("--clients and --duration must be positive");
+            return options;
+        }
+
+        private static void usage(String problem) {
+            System.err.println(problem);
+            System.err.println("Usage: LoadTest [--users n] [--products n] [--orders n] [--data-dir dir]"
+                + " [--clients n] [--warmup s] [--duration s] [--think-ms n] [--mix browse=60,cart=25,checkout=5,admin=10]"
+                + " [--target url] [--webapp dir] [--out file]");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.aurawell.loadtest;
+
+import com.aurawell.tools.SyntheticData;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+// One simulated shopper: logs in as its own seeded user, then repeatedly
+// picks a scenario by weight and runs it, until the test ends. Scenarios are
+// short request sequences, the way the frontend issues them:
+//   browse    catalog (all, by category or a facet page), then one product
+//             or a search
+//   cart      add an item, then view the cart
+//   checkout  add an item, then place the order
+//   admin     as the admin user: an orders page and the product list
+// Every request is timed and recorded against its endpoint (path template).
+final class VirtualUser implements Runnable {
+    private static final String[] CATEGORIES = {"vitamins", "supplements", "aromatherapy"};
+    private static final String[] SEARCH_TERMS = {"vitamin", "omega", "magnesium", "lavender", "probiotic",
+        "zinc", "collagen", "calming", "daily", "vita", "oil", "gummies"};
+
+    private final LoadTest test;
+    private final HttpClient client;
+    private final URI base;
+    private final int userIndex;
+    private final String adminCookie;
+    private final Random random;
+    private String cookie;
+
+    VirtualUser(LoadTest test, HttpClient client, URI base, int userIndex, String adminCookie, long seed) {
+        this.test = test;
+        this.client = client;
+        this.base = base;
+        this.userIndex = userIndex;
+        this.adminCookie = adminCookie;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public void run() {
+        try {
+            cookie = login(test, client, base, SyntheticData.email(userIndex));
+            while (!test.isFinished()) {
+                switch (test.mix().pick(random)) {
+                    case BROWSE -> browse();
+                    case CART -> cart();
+                    case CHECKOUT -> checkout();
+                    case ADMIN -> admin();
+                }
+                if (test.thinkMillis() > 0) {
+                    Thread.sleep(test.thinkMillis() / 2 + random.nextInt((int) test.thinkMillis()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Virtual user " + userIndex + " stopped: " + e.getMessage());
+        }
+    }
+
+    private void browse() throws InterruptedException {
+        switch (random.nextInt(3)) {
+            case 0 -> get("GET /api/products", "/api/products", cookie);
+            case 1 -> get("GET /api/products?category", "/api/products?category=" + pick(CATEGORIES), cookie);
+            default -> get("GET /api/products?facets", "/api/products?category=" + pick(CATEGORIES)
+                + "&inStock=true&sort=price&limit=24&offset=" + 24 * random.nextInt(4), cookie);
+        }
+        if (random.nextInt(4) == 0) {
+            get("GET /api/products/search", "/api/products/search?q="
+                + URLEncoder.encode(pick(SEARCH_TERMS), StandardCharsets.UTF_8) + "&limit=20", cookie);
+        } else {
+            get("GET /api/products/{id}", "/api/products/" + randomProduct(), cookie);
+        }
+    }
+
+    private void cart() throws InterruptedException {
+        addToCart();
+        get("GET /api/cart", "/api/cart", cookie);
+    }
+
+    private void checkout() throws InterruptedException {
+        addToCart();
+        send("POST /api/orders", HttpRequest.newBuilder(base.resolve("/api/orders"))
+            .header("Cookie", cookie)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"shippingAddress\":\"" + userIndex + " Load Test Lane\"}")));
+    }
+
+    private void admin() throws InterruptedException {
+        get("GET /api/admin/orders?limit", "/api/admin/orders?limit=50", adminCookie);
+        get("GET /api/admin/products", "/api/admin/products", adminCookie);
+    }
+
+    private void addToCart() throws InterruptedException {
+        send("POST /api/cart", HttpRequest.newBuilder(base.resolve("/api/cart"))
+            .header("Cookie", cookie)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"productId\":\"" + randomProduct() + "\",\"quantity\":1}")));
+    }
+
+    private void get(String endpoint, String path, String withCookie) throws InterruptedException {
+        send(endpoint, HttpRequest.newBuilder(base.resolve(path)).header("Cookie", withCookie).GET());
+    }
+
+    private void send(String endpoint, HttpRequest.Builder builder) throws InterruptedException {
+        HttpRequest request = builder.header("Accept-Encoding", "gzip").timeout(Duration.ofSeconds(30)).build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            test.results().record(endpoint, response.statusCode(), System.nanoTime() - start);
+        } catch (IOException e) {
+            test.results().record(endpoint, -1, System.nanoTime() - start);
+        }
+    }
+
+    private String randomProduct() {
+        return SyntheticData.productId(random.nextInt(test.products()));
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // The session (or token) cookie of a fresh login; the logins are recorded too
+    static String login(LoadTest test, HttpClient client, URI base, String email)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/api/auth/login"))
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofSeconds(30))
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"email\":\"" + email + "\",\"password\":\"" + SyntheticData.PASSWORD + "\"}"))
+            .build();
+        HttpResponse<Void> response;
+        // 503 means the password hashing queue is full, as when every client logs in at once
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            test.results().record("POST /api/auth/login", response.statusCode(), System.nanoTime() - start);
+            if (response.statusCode() != 503 || attempt == 20) break;
+            Thread.sleep(500 + ThreadLocalRandom.current().nextInt(1000));
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Login as " + email + " failed with status " + response.statusCode());
+        }
+        return response.headers().allValues("Set-Cookie").stream()
+            .map(value -> value.split(";", 2)[0])
+            .filter(value -> value.startsWith("JSESSIONID=") || value.startsWith("aurawell_token="))
+            .findFirst()
+            .orElseThrow(() -> new IOException("Login as " + email + " set no session cookie"));
+    }
+}
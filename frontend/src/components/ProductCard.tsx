@@ -5,7 +5,7 @@ import { useAuth } from '@/contexts/AuthContext';
 import { ShoppingCart, Plus } from 'lucide-react';
 import { motion } from 'framer-motion';
 import { useState } from 'react';
-import { getImageUrl } from '@/utils/images';
+import { getImageUrl, imageWidths } from '@/utils/images';
 
 interface ProductCardProps {
   product: Product;
@@ -54,8 +54,10 @@ export default function ProductCard({ product }: ProductCardProps) {
       <Link to={`/products/${product.id}`}>
         <div className="relative aspect-square overflow-hidden bg-cream-100">
           <img
-            src={getImageUrl(product.imageUrl)}
+            src={getImageUrl(product.imageUrl, imageWidths.card)}
             alt={product.name}
+            loading="lazy"
+            decoding="async"
             className="w-full h-full object-cover group-hover:scale-105 transition-transform duration-500"
           />
           
@@ -16,7 +16,7 @@ import {
   Upload,
   Image as ImageIcon,
 } from 'lucide-react';
-import { getImageUrl } from '@/utils/images';
+import { getImageUrl, imageWidths } from '@/utils/images';
 
 const categories = ['vitamins', 'supplements', 'aromatherapy'];
 const ageGroups = ['toddler', 'child', 'teen', 'adult', 'elderly', 'all'];
@@ -307,7 +307,7 @@ export default function Admin() {
                       <div className="flex items-center gap-3">
                         <div className="w-12 h-12 rounded-lg overflow-hidden bg-cream-100 shrink-0">
                           <img
-                            src={getImageUrl(product.imageUrl)}
+                            src={getImageUrl(product.imageUrl, imageWidths.thumbnail)}
                             alt={product.name}
                             className="w-full h-full object-cover"
                           />
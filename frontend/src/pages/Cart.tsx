@@ -3,7 +3,7 @@ import { useCart } from '@/contexts/CartContext';
 import { motion, AnimatePresence } from 'framer-motion';
 import { Trash2, Minus, Plus, ShoppingBag, ArrowRight, Loader2 } from 'lucide-react';
 import { useState } from 'react';
-import { getImageUrl } from '@/utils/images';
+import { getImageUrl, imageWidths } from '@/utils/images';
 
 export default function Cart() {
   const { items, totalAmount, isLoading, updateQuantity, removeFromCart } = useCart();
@@ -95,7 +95,7 @@ export default function Cart() {
                 <Link to={`/products/${item.productId}`} className="shrink-0">
                   <div className="w-24 h-24 sm:w-32 sm:h-32 rounded-xl overflow-hidden bg-cream-100">
                     <img
-                      src={getImageUrl(item.imageUrl)}
+                      src={getImageUrl(item.imageUrl, imageWidths.thumbnail)}
                       alt={item.name}
                       className="w-full h-full object-cover"
                     />
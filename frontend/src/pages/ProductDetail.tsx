@@ -6,7 +6,7 @@ import { useCart } from '@/contexts/CartContext';
 import { useAuth } from '@/contexts/AuthContext';
 import { motion } from 'framer-motion';
 import { ShoppingCart, Minus, Plus, ArrowLeft, Loader2, Check } from 'lucide-react';
-import { getImageUrl } from '@/utils/images';
+import { getImageUrl, imageWidths } from '@/utils/images';
 
 const categoryColors: Record<string, string> = {
   vitamins: 'bg-amber-100 text-amber-700',
@@ -105,7 +105,7 @@ export default function ProductDetail() {
           className="aspect-square rounded-3xl overflow-hidden bg-cream-100"
         >
           <img
-            src={getImageUrl(product.imageUrl)}
+            src={getImageUrl(product.imageUrl, imageWidths.detail)}
             alt={product.name}
             className="w-full h-full object-cover"
           />
@@ -25,6 +25,17 @@ async function request<T>(
   return response.json();
 }
 
+const UPLOAD_CHUNK_SIZE = 2 * 1024 * 1024;
+const UPLOAD_RETRIES = 3;
+
+async function uploadResult(response: Response): Promise<{ success: boolean; imageUrl: string; message?: string }> {
+  if (!response.ok) {
+    const errorData = await response.json().catch(() => ({}));
+    throw new Error(errorData.error || 'Failed to upload image');
+  }
+  return response.json();
+}
+
 // Auth API
 export const authApi = {
   login: (email: string, password: string) =>
@@ -128,22 +139,51 @@ export const adminApi = {
       body: JSON.stringify({ orderId, status }),
     }),
 
+  // Small files go up in one streamed request; larger ones as a resumable
+  // upload in chunks, so a dropped connection only repeats the current chunk
   uploadImage: async (file: File): Promise<{ success: boolean; imageUrl: string; message?: string }> => {
-    const formData = new FormData();
-    formData.append('image', file);
+    if (file.size <= UPLOAD_CHUNK_SIZE) {
+      const response = await fetch(`${API_BASE_URL}/upload/image`, {
+        method: 'POST',
+        credentials: 'include',
+        headers: { 'Content-Type': file.type || 'application/octet-stream' },
+        body: file,
+      });
+      return uploadResult(response);
+    }
 
-    const response = await fetch(`${API_BASE_URL}/upload/image`, {
+    const session = await request<{ uploadId: string; offset: number }>('/upload/image/sessions', {
       method: 'POST',
-      credentials: 'include',
-      body: formData,
+      body: JSON.stringify({ size: file.size }),
     });
-
-    if (!response.ok) {
-      const errorData = await response.json().catch(() => ({}));
-      throw new Error(errorData.error || 'Failed to upload image');
+    const sessionUrl = `${API_BASE_URL}/upload/image/sessions/${session.uploadId}`;
+    let offset = session.offset;
+    let failures = 0;
+    for (;;) {
+      const end = Math.min(offset + UPLOAD_CHUNK_SIZE, file.size);
+      let response: Response | undefined;
+      try {
+        response = await fetch(sessionUrl, {
+          method: 'PUT',
+          credentials: 'include',
+          headers: { 'Content-Range': `bytes ${offset}-${end - 1}/${file.size}` },
+          body: file.slice(offset, end),
+        });
+      } catch (error) {
+        if (++failures > UPLOAD_RETRIES) throw error;
+      }
+      if (response?.ok) {
+        if (end === file.size) return uploadResult(response);
+        offset = end;
+        failures = 0;
+        continue;
+      }
+      if (response && (response.status !== 409 || ++failures > UPLOAD_RETRIES)) {
+        return uploadResult(response);
+      }
+      // The connection dropped or the server holds a different offset: resume from its count
+      offset = (await request<{ offset: number }>(`/upload/image/sessions/${session.uploadId}`)).offset;
     }
-
-    return response.json();
   },
 };
 
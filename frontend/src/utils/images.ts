@@ -8,13 +8,24 @@ const API_BASE_URL = API_URL.endsWith('/api') ? API_URL.slice(0, -4) : API_URL;
 // Default fallback image when product image is not found
 export const defaultProductImage = '/images/products/default-product.jpg';
 
+// Widths the backend keeps resized copies of (ImageDerivatives)
+export const imageWidths = {
+  thumbnail: 160,
+  card: 480,
+  detail: 1080,
+} as const;
+
 // Helper function to get the full image URL
 // Handles both API paths (/api/images/...) and local paths (/images/...)
-export function getImageUrl(imageUrl: string | undefined | null): string {
+// Pass a width to get a resized copy of an uploaded image instead of the original
+export function getImageUrl(imageUrl: string | undefined | null, width?: number): string {
   if (!imageUrl) return defaultProductImage;
   
   // If it's an API path from uploaded images, prepend the backend URL
   if (imageUrl.startsWith('/api/')) {
+    if (width && imageUrl.startsWith('/api/images/')) {
+      return `${API_BASE_URL}${imageUrl}?w=${width}`;
+    }
     return `${API_BASE_URL}${imageUrl}`;
   }
   